@@ -1,6 +1,7 @@
 plugins {
     id("java")
     id("org.jetbrains.intellij.platform") version "2.2.1"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.tamaygz"
@@ -25,6 +26,48 @@ dependencies {
     }
 
     implementation("com.google.code.gson:gson:2.10.1")
+
+    testImplementation("junit:junit:4.13.2")
+}
+
+// Benchmarks in src/jmh/java run against the platform jars, outside the IDE
+configurations {
+    named("jmhCompileClasspath") { extendsFrom(configurations["intellijPlatformClasspath"]) }
+    named("jmhRuntimeClasspath") { extendsFrom(configurations["intellijPlatformClasspath"]) }
+}
+
+// ./gradlew jmh runs all benchmarks (add --offline once dependencies are cached).
+// Narrow with -Pjmh.includes=<regex>, profile with -Pjmh.profilers=gc
+jmh {
+    jmhVersion = "1.37"
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    jvmArgsAppend = listOf("-Djava.awt.headless=true")
+    includes = providers.gradleProperty("jmh.includes").map { listOf(it) }.orElse(emptyList())
+    profilers = providers.gradleProperty("jmh.profilers").map { it.split(',') }.orElse(emptyList())
+    resultFormat = "JSON"
+}
+
+// Synthetic diagrams (see SyntheticDiagramGenerator). Sizes default to 5k tables, 500 containers, 2k notes:
+// ./gradlew generateDiagramFixture -Pfixture.seed=7 -Pfixture.sizes=5000,500,2000
+tasks.register<JavaExec>("generateDiagramFixture") {
+    group = "benchmark"
+    description = "Writes a synthetic _colorfuldiag.json fixture to build/fixtures"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "com.tamaygz.colorfuldiag.persistence.DiagramFixtureWriter"
+    args(layout.buildDirectory.dir("fixtures").get().asFile.path, providers.gradleProperty("fixture.seed").getOrElse("42"))
+    args(providers.gradleProperty("fixture.sizes").map { it.split(',') }.getOrElse(emptyList()))
+}
+
+// ./gradlew soak -Psoak.seconds=600
+tasks.register<JavaExec>("soak") {
+    group = "benchmark"
+    description = "Edits, paints and saves a large synthetic diagram headlessly and reports latencies and heap"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass = "com.tamaygz.colorfuldiag.diagram.OverlaySoak"
+    jvmArgs("-Djava.awt.headless=true")
+    args(providers.gradleProperty("soak.seconds").getOrElse("60"), providers.gradleProperty("soak.seed").getOrElse("42"))
 }
 
 intellijPlatform {
@@ -71,4 +114,9 @@ tasks {
     buildSearchableOptions {
         enabled = false
     }
+
+    // Overlay tests paint into images, without a display
+    test {
+        systemProperty("java.awt.headless", "true")
+    }
 }
@@ -0,0 +1,105 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.SyntheticDiagramGenerator;
+
+/**
+ * Headless overlay frames painted into a {@link BufferedImage}.
+ * <ul>
+ *   <li>{@code steadyFrame}: nothing changed, so the cached layers are blitted. Run with
+ *       {@code -Pjmh.profilers=gc} to check that a steady frame allocates next to nothing.</li>
+ *   <li>{@code invalidatedFrame}: the metadata was replaced, so every visible element is
+ *       drawn again. The zoom parameter covers full detail and the level-of-detail path.</li>
+ *   <li>{@code scrolledFrame}: the view scrolled by 40 pixels, so the layers are shifted and
+ *       only the exposed strip is drawn.</li>
+ *   <li>{@code contains}: the hit test Swing runs for every mouse event.</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OverlayPaintBenchmark {
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 1000;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int elements;
+
+    @Param({"1.0", "0.25"})
+    public double zoom;
+
+    private OverlayPanel panel;
+    private DiagramMetadata metadata;
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private final int[] points = new int[1024];
+    private int next;
+    private boolean scrolled;
+
+    @Setup
+    public void setUp() {
+        metadata = new SyntheticDiagramGenerator(42).generate(elements);
+        panel = new OverlayPanel();
+        panel.setSize(WIDTH, HEIGHT);
+        panel.setMetadata(metadata);
+        panel.setViewTransform(0, 0, zoom);
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        graphics = image.createGraphics();
+        graphics.setClip(0, 0, WIDTH, HEIGHT);
+        Random random = new Random(7);
+        for (int i = 0; i < points.length; i += 2) {
+            points[i] = random.nextInt(WIDTH);
+            points[i + 1] = random.nextInt(HEIGHT);
+        }
+        // Render the layers once so steadyFrame starts from a valid cache
+        panel.paintComponent(graphics);
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage steadyFrame() {
+        panel.paintComponent(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage invalidatedFrame() {
+        panel.setMetadata(metadata);
+        panel.paintComponent(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage scrolledFrame() {
+        scrolled = !scrolled;
+        panel.setViewTransform(scrolled ? -40 : 0, 0, zoom);
+        panel.paintComponent(graphics);
+        return image;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        int i = next;
+        next = (next + 2) & (points.length - 1);
+        return panel.contains(points[i], points[i + 1]);
+    }
+}
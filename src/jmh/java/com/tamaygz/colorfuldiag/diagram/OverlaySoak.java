@@ -0,0 +1,162 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import com.google.gson.GsonBuilder;
+import com.tamaygz.colorfuldiag.metrics.LatencyHistogram;
+import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
+import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
+import com.tamaygz.colorfuldiag.model.SyntheticDiagramGenerator;
+import com.tamaygz.colorfuldiag.persistence.FsyncPolicy;
+import com.tamaygz.colorfuldiag.persistence.MetadataFileStore;
+import com.tamaygz.colorfuldiag.persistence.MetadataFormat;
+import com.tamaygz.colorfuldiag.persistence.MetadataJournal;
+import com.tamaygz.colorfuldiag.persistence.MetadataJsonAdapters;
+
+/**
+ * Headless soak run: edits a large synthetic diagram for a fixed time while painting
+ * overlay frames, hit testing and saving, the way a long editing session would.
+ * <p>
+ * Every few seconds it prints latency percentiles per operation and the heap in use
+ * after a GC, so slow drift or a leak shows up as growing numbers. The view pans after
+ * every edit and zooms out now and then, so each edit is followed by one full re-render
+ * and a few cached frames. Every edit is journaled; every 50th edit writes a snapshot
+ * and reloads it.
+ * <p>
+ * Arguments: {@code [seconds] [seed]}. Run with {@code -Djava.awt.headless=true}.
+ */
+public final class OverlaySoak {
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 1000;
+    private static final long REPORT_INTERVAL_NANOS = 5_000_000_000L;
+
+    private final LatencyHistogram paint = new LatencyHistogram();
+    private final LatencyHistogram contains = new LatencyHistogram();
+    private final LatencyHistogram journalAppend = new LatencyHistogram();
+    private final LatencyHistogram save = new LatencyHistogram();
+    private final LatencyHistogram load = new LatencyHistogram();
+
+    private OverlaySoak() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 60;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        new OverlaySoak().run(seconds, seed);
+    }
+
+    private void run(long seconds, long seed) throws IOException {
+        Random random = new Random(seed);
+        DiagramMetadata metadata = new SyntheticDiagramGenerator(seed).generateLarge();
+        Path directory = Files.createTempDirectory("colorfuldiag-soak");
+        Path snapshot = directory.resolve("soak_colorfuldiag.json");
+        Path journalPath = directory.resolve("soak_colorfuldiag.journal");
+        MetadataFileStore fileStore = new MetadataFileStore(
+                MetadataJsonAdapters.register(new GsonBuilder()).setPrettyPrinting().create());
+        MetadataJournal journal = new MetadataJournal();
+        fileStore.write(snapshot, metadata, MetadataFormat.JSON, FsyncPolicy.NEVER);
+
+        OverlayPanel panel = new OverlayPanel();
+        panel.setSize(WIDTH, HEIGHT);
+        panel.setMetadata(metadata);
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setClip(0, 0, WIDTH, HEIGHT);
+
+        System.out.printf("Soaking for %ds: %d colored tables, %d containers, %d notes (seed %d)%n", seconds,
+                metadata.getTables().size(), metadata.getContainers().size(), metadata.getNotes().size(), seed);
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long nextReport = System.nanoTime() + REPORT_INTERVAL_NANOS;
+        long edits = 0;
+        while (System.nanoTime() < end) {
+            // Edit one element, like a drag step
+            MetadataChange change = editRandomElement(metadata, random);
+            if (change == null) {
+                break;
+            }
+            panel.setMetadata(metadata);
+            edits++;
+
+            long start = System.nanoTime();
+            journal.append(journalPath, 0, List.of(change), FsyncPolicy.NEVER);
+            journalAppend.record(System.nanoTime() - start);
+
+            if (edits % 50 == 0) {
+                start = System.nanoTime();
+                fileStore.write(snapshot, metadata, MetadataFormat.JSON, FsyncPolicy.NEVER);
+                journal.delete(journalPath);
+                save.record(System.nanoTime() - start);
+                start = System.nanoTime();
+                fileStore.read(snapshot);
+                load.record(System.nanoTime() - start);
+            }
+
+            // A few frames per edit, following a slow pan and zoom
+            for (int frame = 0; frame < 4; frame++) {
+                double zoom = (edits / 200) % 3 == 2 ? 0.25 : 1.0;
+                panel.setViewTransform((int) -(edits % 2000), (int) -((edits / 2) % 2000), zoom);
+                start = System.nanoTime();
+                panel.paintComponent(graphics);
+                paint.record(System.nanoTime() - start);
+                start = System.nanoTime();
+                panel.contains(random.nextInt(WIDTH), random.nextInt(HEIGHT));
+                contains.record(System.nanoTime() - start);
+            }
+
+            if (System.nanoTime() >= nextReport) {
+                report(edits);
+                nextReport += REPORT_INTERVAL_NANOS;
+            }
+        }
+        report(edits);
+        graphics.dispose();
+        fileStore.delete(snapshot);
+        journal.delete(journalPath);
+        Files.deleteIfExists(MetadataFileStore.getBackupPath(snapshot));
+        Files.deleteIfExists(directory);
+    }
+
+    private static MetadataChange editRandomElement(DiagramMetadata metadata, Random random) {
+        int dx = random.nextInt(21) - 10;
+        int dy = random.nextInt(21) - 10;
+        if (!metadata.getNotes().isEmpty() && (metadata.getContainers().isEmpty() || random.nextBoolean())) {
+            StickyNoteInfo note = metadata.getNotes().get(random.nextInt(metadata.getNotes().size()));
+            int[] position = note.getPosition();
+            note.setPosition(new int[]{position[0] + dx, position[1] + dy});
+            return MetadataChange.noteMoved(note);
+        }
+        if (!metadata.getContainers().isEmpty()) {
+            ContainerInfo container = metadata.getContainers().get(random.nextInt(metadata.getContainers().size()));
+            int[] bounds = container.getBounds();
+            container.setBounds(new int[]{bounds[0] + dx, bounds[1] + dy, bounds[2], bounds[3]});
+            return MetadataChange.containerMoved(container);
+        }
+        return null;
+    }
+
+    private void report(long edits) {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        long heapMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+        System.out.printf("%d edits, heap after GC %d MB%n", edits, heapMb);
+        print("paint", paint);
+        print("contains", contains);
+        print("journal append", journalAppend);
+        print("save", save);
+        print("load", load);
+    }
+
+    private static void print(String name, LatencyHistogram histogram) {
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        System.out.printf("  %-15s %8d calls | p50 %8.3f | p95 %8.3f | p99 %8.3f | max %8.3f ms%n", name,
+                snapshot.count(), snapshot.p50() / 1e6, snapshot.p95() / 1e6, snapshot.p99() / 1e6, snapshot.max() / 1e6);
+    }
+}
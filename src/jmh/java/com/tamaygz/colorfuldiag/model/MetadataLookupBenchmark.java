@@ -0,0 +1,62 @@
+package com.tamaygz.colorfuldiag.model;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.tamaygz.colorfuldiag.diagram.DiagramColorApplicator;
+
+/**
+ * Per-table lookups done while the diagram renders table nodes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetadataLookupBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int tables;
+
+    private DiagramMetadata metadata;
+    private String[] tableIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        metadata = new SyntheticDiagramGenerator(42).generate(tables, Math.max(2, tables / 10), 0);
+        // Include a miss for every table, as most tables of a real diagram are uncolored
+        tableIds = new String[tables * 2];
+        for (int i = 0; i < tableIds.length; i++) {
+            tableIds[i] = SyntheticDiagramGenerator.tableId(i);
+        }
+    }
+
+    private String nextTableId() {
+        String tableId = tableIds[next];
+        next = next + 1 == tableIds.length ? 0 : next + 1;
+        return tableId;
+    }
+
+    @Benchmark
+    public ContainerInfo findContainerForTable() {
+        return metadata.findContainerForTable(nextTableId());
+    }
+
+    @Benchmark
+    public TableColorInfo getTableColor() {
+        return metadata.getTableColor(nextTableId());
+    }
+
+    @Benchmark
+    public Color getEffectiveColor() {
+        return DiagramColorApplicator.getEffectiveColor(metadata, nextTableId());
+    }
+}
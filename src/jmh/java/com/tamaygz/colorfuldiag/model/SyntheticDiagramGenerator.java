@@ -0,0 +1,171 @@
+package com.tamaygz.colorfuldiag.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Deterministic generator of large, realistic diagrams for benchmarks, soak runs and
+ * fixtures. The same seed and sizes always produce the same metadata, IDs included.
+ * <ul>
+ *   <li>Tables are named {@code schema.word_n} by index (see {@link #tableId(int)}), so
+ *       lookups can be driven without the generator. About 40% have their own color.</li>
+ *   <li>Containers group runs of tables from the same schema. About a third are nested in
+ *       or overlap an earlier container, as hand-made diagrams tend to.</li>
+ *   <li>Note text lengths are skewed like real notes: mostly a sentence or two, sometimes
+ *       a few paragraphs, now and then a long identifier or SQL snippet. Half the notes
+ *       sit on top of a container.</li>
+ * </ul>
+ * The canvas grows with the element count, so at zoom 1 only part of a large diagram
+ * is on screen.
+ */
+public final class SyntheticDiagramGenerator {
+    /** 5,000 tables, 500 containers and 2,000 notes. */
+    public static final int LARGE_TABLES = 5000;
+    public static final int LARGE_CONTAINERS = 500;
+    public static final int LARGE_NOTES = 2000;
+
+    private static final String[] SCHEMAS = {"public", "sales", "billing", "inventory", "auth", "analytics"};
+    private static final String[] WORDS = {
+            "order", "customer", "invoice", "payment", "product", "shipment", "account", "session",
+            "address", "item", "price", "discount", "warehouse", "stock", "event", "audit",
+            "user", "role", "permission", "report", "metric", "refund", "supplier", "category"
+    };
+    private static final String[] NOTE_WORDS = {
+            "denormalized", "for", "reporting", "see", "ticket", "the", "nightly", "job", "reads",
+            "this", "table", "before", "migration", "keep", "in", "sync", "with", "legacy", "schema",
+            "owner", "is", "team", "do", "not", "drop", "index", "on", "foreign", "key", "pending",
+            "review", "partitioned", "by", "month", "soft", "deletes", "only", "TODO", "check", "nulls"
+    };
+    private static final String[] COLORS = {
+            "#45B7D1", "#96CEB4", "#FFEEAD", "#D4A5A5", "#9B59B6",
+            "#3498DB", "#E74C3C", "#2ECC71", "#F39C12", "#1ABC9C"
+    };
+
+    private final long seed;
+
+    public SyntheticDiagramGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public static String tableId(int index) {
+        return SCHEMAS[index % SCHEMAS.length] + "." + WORDS[(index / SCHEMAS.length) % WORDS.length] + "_" + index;
+    }
+
+    /**
+     * Generates {@link #LARGE_TABLES} tables, {@link #LARGE_CONTAINERS} containers and
+     * {@link #LARGE_NOTES} notes.
+     */
+    public DiagramMetadata generateLarge() {
+        return generate(LARGE_TABLES, LARGE_CONTAINERS, LARGE_NOTES);
+    }
+
+    /**
+     * Generates {@code elements} overlay elements, half containers and half notes, and
+     * four tables per element.
+     */
+    public DiagramMetadata generate(int elements) {
+        int containers = elements / 2;
+        return generate(elements * 4, containers, elements - containers);
+    }
+
+    public DiagramMetadata generate(int tables, int containers, int notes) {
+        Random random = new Random(seed);
+        DiagramMetadata metadata = new DiagramMetadata();
+        int canvas = Math.max(2000, (int) Math.sqrt(containers + notes) * 300);
+
+        for (int i = 0; i < tables; i++) {
+            if (random.nextInt(10) < 4) {
+                metadata.setTableColor(tableId(i), randomColor(random));
+            }
+        }
+
+        List<int[]> containerBounds = new ArrayList<>(containers);
+        // Tables of one schema are every SCHEMAS.length-th index; give each container a run of them
+        int tablesPerContainer = containers > 0 ? Math.max(1, tables / containers) : 0;
+        for (int i = 0; i < containers; i++) {
+            int[] bounds = containerBounds.isEmpty() || random.nextInt(3) != 0
+                    ? new int[]{random.nextInt(canvas), random.nextInt(canvas),
+                                200 + random.nextInt(700), 150 + random.nextInt(550)}
+                    : nestedIn(containerBounds.get(random.nextInt(containerBounds.size())), random);
+            containerBounds.add(bounds);
+            ContainerInfo container = new ContainerInfo(
+                    capitalize(WORDS[random.nextInt(WORDS.length)]) + " " + (i + 1), bounds);
+            container.setId(randomId(random));
+            container.setColor(randomColor(random));
+            int schema = i % SCHEMAS.length;
+            for (int k = 0; k < tablesPerContainer; k++) {
+                int table = schema + (i / SCHEMAS.length * tablesPerContainer + k) * SCHEMAS.length;
+                if (table < tables) {
+                    container.addTable(tableId(table));
+                }
+            }
+            metadata.addContainer(container);
+        }
+
+        for (int i = 0; i < notes; i++) {
+            int width = 120 + random.nextInt(200);
+            int height = 80 + random.nextInt(160);
+            int x;
+            int y;
+            if (!containerBounds.isEmpty() && random.nextBoolean()) {
+                int[] on = containerBounds.get(random.nextInt(containerBounds.size()));
+                x = on[0] + random.nextInt(Math.max(1, on[2]));
+                y = on[1] + random.nextInt(Math.max(1, on[3]));
+            } else {
+                x = random.nextInt(canvas);
+                y = random.nextInt(canvas);
+            }
+            StickyNoteInfo note = new StickyNoteInfo(new int[]{x, y}, new int[]{width, height}, noteText(random));
+            note.setId(randomId(random));
+            note.setColor(random.nextInt(4) == 0 ? randomColor(random) : StickyNoteInfo.DEFAULT_COLOR);
+            metadata.addNote(note);
+        }
+        return metadata;
+    }
+
+    /**
+     * Bounds inside the given container, sometimes sticking out of it.
+     */
+    private static int[] nestedIn(int[] outer, Random random) {
+        int width = Math.max(120, outer[2] / 2 + random.nextInt(Math.max(1, outer[2] / 2)));
+        int height = Math.max(90, outer[3] / 2 + random.nextInt(Math.max(1, outer[3] / 2)));
+        return new int[]{outer[0] + random.nextInt(Math.max(1, outer[2] / 2)),
+                         outer[1] + random.nextInt(Math.max(1, outer[3] / 2)), width, height};
+    }
+
+    private static String noteText(Random random) {
+        // Mostly 3-30 words, one in ten a few paragraphs
+        int words = random.nextInt(10) == 0 ? 60 + random.nextInt(240) : 3 + random.nextInt(28);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(random.nextInt(40) == 0 ? "\n" : " ");
+            }
+            int kind = random.nextInt(50);
+            if (kind == 0) {
+                // Long identifier, wider than any note
+                text.append(tableId(random.nextInt(1000))).append("__").append(WORDS[random.nextInt(WORDS.length)])
+                        .append("_id_fk_").append(WORDS[random.nextInt(WORDS.length)]).append("_idx");
+            } else if (kind == 1) {
+                text.append("SELECT * FROM ").append(tableId(random.nextInt(1000))).append(" WHERE id = ?");
+            } else {
+                text.append(NOTE_WORDS[random.nextInt(NOTE_WORDS.length)]);
+            }
+        }
+        return text.toString();
+    }
+
+    private static String randomId(Random random) {
+        return new UUID(random.nextLong(), random.nextLong()).toString();
+    }
+
+    private static String randomColor(Random random) {
+        return COLORS[random.nextInt(COLORS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,46 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import com.google.gson.GsonBuilder;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.SyntheticDiagramGenerator;
+
+/**
+ * Writes a synthetic diagram as a {@code _colorfuldiag.json} fixture, in exactly the
+ * format the plugin saves. Put it next to a {@code .uml} diagram file of the same
+ * name to open the diagram with it in a sandbox IDE.
+ * <p>
+ * Arguments: {@code <output file or directory> [seed] [tables containers notes]}.
+ * Without sizes the large preset of {@link SyntheticDiagramGenerator} is used.
+ */
+public final class DiagramFixtureWriter {
+
+    private DiagramFixtureWriter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 2 && args.length != 5) {
+            System.err.println("Usage: DiagramFixtureWriter <output> [seed] [tables containers notes]");
+            System.exit(2);
+        }
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 42;
+        SyntheticDiagramGenerator generator = new SyntheticDiagramGenerator(seed);
+        DiagramMetadata metadata = args.length == 5
+                ? generator.generate(Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]))
+                : generator.generateLarge();
+
+        Path output = Path.of(args[0]);
+        if (Files.isDirectory(output) || !output.getFileName().toString().endsWith(".json")) {
+            Files.createDirectories(output);
+            output = output.resolve("synthetic_" + seed + "_colorfuldiag.json");
+        }
+        MetadataFileStore fileStore = new MetadataFileStore(
+                MetadataJsonAdapters.register(new GsonBuilder()).setPrettyPrinting().create());
+        fileStore.write(output, metadata, MetadataFormat.JSON, FsyncPolicy.NEVER);
+        System.out.printf("Wrote %d colored tables, %d containers and %d notes to %s%n",
+                metadata.getTables().size(), metadata.getContainers().size(), metadata.getNotes().size(), output);
+    }
+}
@@ -0,0 +1,96 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.gson.GsonBuilder;
+import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
+import com.tamaygz.colorfuldiag.model.SyntheticDiagramGenerator;
+
+/**
+ * Disk work behind {@link DiagramMetadataService} loads and saves: full snapshots in
+ * both formats and journal appends. The service itself needs a project, so the
+ * benchmarks drive the same {@link MetadataFileStore} and {@link MetadataJournal} it uses.
+ * Writes skip fsync to measure the plugin rather than the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataPersistenceBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int elements;
+
+    @Param({"JSON", "BINARY"})
+    public MetadataFormat format;
+
+    private Path directory;
+    private Path snapshot;
+    private Path journalPath;
+    private MetadataFileStore fileStore;
+    private final MetadataJournal journal = new MetadataJournal();
+    private DiagramMetadata metadata;
+    private List<MetadataChange> change;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("colorfuldiag-bench");
+        snapshot = directory.resolve(format == MetadataFormat.BINARY ? "bench.colorfuldiag.bin" : "bench_colorfuldiag.json");
+        journalPath = directory.resolve("bench_colorfuldiag.journal");
+        // Same Gson setup as DiagramMetadataService
+        fileStore = new MetadataFileStore(MetadataJsonAdapters.register(new GsonBuilder()).setPrettyPrinting().create());
+        metadata = new SyntheticDiagramGenerator(42).generate(elements);
+        fileStore.write(snapshot, metadata, format, FsyncPolicy.NEVER);
+        ContainerInfo moved = metadata.getContainers().get(0);
+        change = List.of(MetadataChange.containerMoved(moved));
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncateJournal() throws IOException {
+        journal.delete(journalPath);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public DiagramMetadata load() throws IOException {
+        return fileStore.read(snapshot);
+    }
+
+    @Benchmark
+    public Path save() throws IOException {
+        fileStore.write(snapshot, metadata, format, FsyncPolicy.NEVER);
+        return snapshot;
+    }
+
+    @Benchmark
+    public Path appendToJournal() throws IOException {
+        journal.append(journalPath, 0, change, FsyncPolicy.NEVER);
+        return journalPath;
+    }
+}
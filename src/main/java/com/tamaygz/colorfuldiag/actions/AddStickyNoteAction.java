@@ -2,10 +2,14 @@ package com.tamaygz.colorfuldiag.actions;
 
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
 import com.tamaygz.colorfuldiag.ui.StickyNoteDialog;
 import org.jetbrains.annotations.NotNull;
 
+import java.awt.Point;
+import java.util.List;
+
 /**
  * Action to add a sticky note to the diagram.
  */
@@ -27,32 +31,25 @@ public class AddStickyNoteAction extends DiagramActionBase {
             return;
         }
 
-        // Calculate position for the new note
-        int x = 100;
-        int y = 100;
-
-        // Offset from existing notes to avoid overlap
-        if (!metadata.getNotes().isEmpty()) {
-            int maxX = 0;
-            int maxY = 0;
-            for (StickyNoteInfo existing : metadata.getNotes()) {
-                int[] pos = existing.getPosition();
-                int[] size = existing.getSize();
-                if (pos != null && pos.length >= 2) {
-                    int width = size != null && size.length >= 2 ? size[0] : 150;
-                    int height = size != null && size.length >= 2 ? size[1] : 100;
-                    maxX = Math.max(maxX, pos[0] + width);
-                    maxY = Math.max(maxY, pos[1] + height);
-                }
-            }
-            // Place new note to the right of existing ones
-            x = maxX + 20;
+        // Near the top left of the visible area, stepping down and right past notes already there
+        Point origin = getVisibleOrigin(e, 100);
+        while (startsAt(metadata, origin)) {
+            origin.translate(20, 20);
         }
 
-        StickyNoteInfo note = dialog.createStickyNoteInfo(x, y);
+        StickyNoteInfo note = dialog.createStickyNoteInfo(origin.x, origin.y);
         metadata.addNote(note);
 
-        saveMetadata(e, metadata);
-        refreshDiagram(e);
+        publishChanges(e, metadata, List.of(MetadataChange.noteAdded(note)));
+    }
+
+    private static boolean startsAt(DiagramMetadata metadata, Point origin) {
+        for (StickyNoteInfo existing : metadata.getNotes()) {
+            int[] pos = existing.getPosition();
+            if (pos != null && pos.length >= 2 && pos[0] == origin.x && pos[1] == origin.y) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -5,11 +5,15 @@ import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.ui.Messages;
 import com.tamaygz.colorfuldiag.model.ContainerInfo;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import com.tamaygz.colorfuldiag.ui.ContainerSelectionDialog;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Action to add selected tables to a container.
@@ -53,25 +57,39 @@ public class AddToContainerAction extends DiagramActionBase {
         }
 
         // Add tables to the selected container
+        Set<ContainerInfo> changedContainers = new LinkedHashSet<>();
+        List<MetadataChange> colorChanges = new ArrayList<>();
         for (DiagramNode<?> node : selectedNodes) {
             String tableId = getTableId(node);
             if (tableId != null) {
                 // Remove from any existing container first
                 for (ContainerInfo container : containers) {
-                    container.removeTable(tableId);
+                    if (container != selectedContainer && container.containsTable(tableId)) {
+                        container.removeTable(tableId);
+                        changedContainers.add(container);
+                    }
                 }
                 // Add to the selected container
-                selectedContainer.addTable(tableId);
+                if (!selectedContainer.containsTable(tableId)) {
+                    selectedContainer.addTable(tableId);
+                    changedContainers.add(selectedContainer);
+                }
 
                 // If table doesn't have its own color, inherit from container
                 if (metadata.getTableColor(tableId) == null && selectedContainer.getColor() != null) {
                     metadata.setTableColor(tableId, selectedContainer.getColor());
+                    colorChanges.add(MetadataChange.tableColored(tableId, selectedContainer.getColor()));
                 }
             }
         }
 
-        saveMetadata(e, metadata);
-        refreshDiagram(e);
+        // Membership changes carry each container's final member list
+        List<MetadataChange> changes = new ArrayList<>();
+        for (ContainerInfo container : changedContainers) {
+            changes.add(MetadataChange.containerTables(container));
+        }
+        changes.addAll(colorChanges);
+        publishChanges(e, metadata, changes);
     }
 
     @Override
@@ -3,12 +3,15 @@ package com.tamaygz.colorfuldiag.actions;
 import com.intellij.diagram.DiagramNode;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import com.tamaygz.colorfuldiag.model.TableColorInfo;
 import com.tamaygz.colorfuldiag.ui.ColorPickerDialog;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 /**
  * Action to color selected tables in the diagram.
@@ -53,16 +56,16 @@ public class ColorTableAction extends DiagramActionBase {
         String colorHex = TableColorInfo.colorToHex(selectedColor);
 
         // Apply color to all selected tables
+        List<MetadataChange> changes = new ArrayList<>();
         for (DiagramNode<?> node : selectedNodes) {
             String tableId = getTableId(node);
             if (tableId != null) {
                 metadata.setTableColor(tableId, colorHex);
+                changes.add(MetadataChange.tableColored(tableId, colorHex));
             }
         }
 
-        // Save and refresh
-        saveMetadata(e, metadata);
-        refreshDiagram(e);
+        publishChanges(e, metadata, changes);
     }
 
     @Override
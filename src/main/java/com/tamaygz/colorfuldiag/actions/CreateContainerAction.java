@@ -1,10 +1,14 @@
 package com.tamaygz.colorfuldiag.actions;
 
+import java.awt.Point;
+import java.util.List;
+
 import org.jetbrains.annotations.NotNull;
 
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.tamaygz.colorfuldiag.model.ContainerInfo;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import com.tamaygz.colorfuldiag.ui.ContainerDialog;
 
 /**
@@ -28,30 +32,25 @@ public class CreateContainerAction extends DiagramActionBase {
             return;
         }
 
-        // Calculate position for the new container
-        // Default to center of visible area or offset from existing containers
-        int x = 50;
-        int y = 50;
-
-        // Offset from existing containers to avoid overlap
-        if (!metadata.getContainers().isEmpty()) {
-            int maxX = 0;
-            int maxY = 0;
-            for (ContainerInfo existing : metadata.getContainers()) {
-                int[] bounds = existing.getBounds();
-                if (bounds != null && bounds.length >= 4) {
-                    maxX = Math.max(maxX, bounds[0] + bounds[2]);
-                    maxY = Math.max(maxY, bounds[1] + bounds[3]);
-                }
-            }
-            // Place new container to the right of existing ones
-            x = maxX + 20;
+        // Top left of the visible area, stepping down and right past containers already there
+        Point origin = getVisibleOrigin(e, 50);
+        while (startsAt(metadata, origin)) {
+            origin.translate(20, 20);
         }
 
-        ContainerInfo container = dialog.createContainerInfo(x, y);
+        ContainerInfo container = dialog.createContainerInfo(origin.x, origin.y);
         metadata.addContainer(container);
 
-        saveMetadata(e, metadata);
-        refreshDiagram(e);
+        publishChanges(e, metadata, List.of(MetadataChange.containerAdded(container)));
+    }
+
+    private static boolean startsAt(DiagramMetadata metadata, Point origin) {
+        for (ContainerInfo existing : metadata.getContainers()) {
+            int[] bounds = existing.getBounds();
+            if (bounds != null && bounds.length >= 2 && bounds[0] == origin.x && bounds[1] == origin.y) {
+                return true;
+            }
+        }
+        return false;
     }
 }
@@ -1,7 +1,9 @@
 package com.tamaygz.colorfuldiag.actions;
 
+import java.awt.Point;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import javax.swing.Icon;
@@ -20,10 +22,14 @@ import com.intellij.openapi.actionSystem.CommonDataKeys;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.tamaygz.colorfuldiag.diagram.DiagramEditorFactoryListener;
 import com.tamaygz.colorfuldiag.diagram.DiagramEditorListener;
+import com.tamaygz.colorfuldiag.diagram.DiagramRefreshManager;
 import com.tamaygz.colorfuldiag.diagram.OverlayPanel;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import com.tamaygz.colorfuldiag.persistence.DiagramMetadataService;
+import com.tamaygz.colorfuldiag.persistence.MetadataChangeListener;
 
 /**
  * Base class for all diagram-related actions.
@@ -152,7 +158,7 @@ public abstract class DiagramActionBase extends AnAction {
         // First try to get from overlay directly (faster)
         String diagramPath = getDiagramPath(e);
         if (diagramPath != null) {
-            OverlayPanel overlay = DiagramEditorListener.getOverlayPanel(diagramPath);
+            OverlayPanel overlay = DiagramEditorListener.getOverlayPanel(e.getProject(), diagramPath);
             if (overlay != null && overlay.getMetadata() != null) {
                 return overlay.getMetadata();
             }
@@ -179,7 +185,7 @@ public abstract class DiagramActionBase extends AnAction {
     protected OverlayPanel getActiveOverlay(@NotNull AnActionEvent e) {
         String diagramPath = getDiagramPath(e);
         if (diagramPath != null) {
-            OverlayPanel overlay = DiagramEditorListener.getOverlayPanel(diagramPath);
+            OverlayPanel overlay = DiagramEditorListener.getOverlayPanel(e.getProject(), diagramPath);
             if (overlay != null) {
                 return overlay;
             }
@@ -190,42 +196,81 @@ public abstract class DiagramActionBase extends AnAction {
     }
 
     /**
-     * Saves metadata for the current diagram.
+     * Where a new element goes: {@code inset} pixels into the visible part of the diagram,
+     * in the diagram coordinates elements are stored in. The overlay knows the current
+     * scroll position and zoom; without one the inset is taken as is.
+     */
+    @NotNull
+    protected Point getVisibleOrigin(@NotNull AnActionEvent e, int inset) {
+        OverlayPanel overlay = getActiveOverlay(e);
+        if (overlay == null) {
+            return new Point(inset, inset);
+        }
+        return new Point(overlay.toModelX(inset), overlay.toModelY(inset));
+    }
+
+    /**
+     * Saves the metadata of the current diagram as a whole, e.g. after an import replaced it.
+     * Edits of individual elements should go through {@link #publishChanges} instead.
      */
     protected void saveMetadata(@NotNull AnActionEvent e, @NotNull DiagramMetadata metadata) {
         Project project = e.getProject();
         DiagramMetadataService service = getMetadataService(e);
         String diagramPath = getDiagramPath(e);
 
-        if (service != null && diagramPath != null) {
+        if (project != null && service != null && diagramPath != null) {
             service.saveMetadataToPath(
-                    DiagramMetadataService.getMetadataFilePath(diagramPath),
+                    service.resolveMetadataFilePath(diagramPath),
                     metadata
             );
             
-            // Update the overlay panel with the new metadata
-            DiagramEditorListener.updateOverlayMetadata(diagramPath, metadata);
+            // Update the overlay and diagram view; rapid edits are coalesced per diagram
+            DiagramRefreshManager refreshManager = DiagramRefreshManager.getInstance(project);
+            DiagramBuilder builder = getDiagramBuilder(e);
+            if (builder != null) {
+                refreshManager.registerDiagram(diagramPath, builder);
+            }
+            refreshManager.refreshDiagramVisualization(diagramPath, metadata);
+            ensureOverlayAttached(project, diagramPath);
         }
-        
-        // Also update any active overlay directly
-        OverlayPanel overlay = getActiveOverlay(e);
-        if (overlay != null) {
-            overlay.setMetadata(metadata);
-            overlay.repaint();
+    }
+
+    /**
+     * Announces typed edits already applied to the current diagram's metadata on
+     * {@link MetadataChangeListener#TOPIC}. The metadata service appends them to the
+     * journal, and the overlay and diagram view update only what the edits touched.
+     */
+    protected void publishChanges(@NotNull AnActionEvent e, @NotNull DiagramMetadata metadata,
+                                  @NotNull List<MetadataChange> changes) {
+        Project project = e.getProject();
+        String diagramPath = getDiagramPath(e);
+        if (project == null || diagramPath == null || changes.isEmpty()) {
+            return;
         }
 
-        // Ensure overlay is attached to the diagram
-        if (project != null) {
-            com.tamaygz.colorfuldiag.diagram.DiagramEditorFactoryListener.tryAttachOverlayToCurrentDiagram(project);
+        DiagramBuilder builder = getDiagramBuilder(e);
+        if (builder != null) {
+            DiagramRefreshManager.getInstance(project).registerDiagram(diagramPath, builder);
+        }
+        project.getMessageBus().syncPublisher(MetadataChangeListener.TOPIC)
+                .metadataChanged(diagramPath, metadata, changes);
+        ensureOverlayAttached(project, diagramPath);
+    }
+
+    private static void ensureOverlayAttached(@NotNull Project project, @NotNull String diagramPath) {
+        if (DiagramEditorListener.getOverlayPanel(project, diagramPath) == null) {
+            DiagramEditorFactoryListener.tryAttachOverlayToCurrentDiagram(project);
         }
     }
 
     /**
      * Refreshes the diagram view.
+     * When the metadata was saved for a known diagram, {@link #saveMetadata} has already
+     * scheduled the builder update through {@link DiagramRefreshManager}.
      */
     protected void refreshDiagram(@NotNull AnActionEvent e) {
         DiagramBuilder builder = getDiagramBuilder(e);
-        if (builder != null) {
+        if (builder != null && (getMetadataService(e) == null || getDiagramPath(e) == null)) {
             try {
                 builder.update(true, false);
             } catch (Exception ex) {
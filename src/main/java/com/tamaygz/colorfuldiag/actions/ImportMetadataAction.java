@@ -6,9 +6,13 @@ import com.intellij.openapi.fileChooser.FileChooserDescriptor;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import com.tamaygz.colorfuldiag.persistence.DiagramMetadataService;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Action to import diagram metadata from a JSON file.
  */
@@ -69,31 +73,34 @@ public class ImportMetadataAction extends DiagramActionBase {
         DiagramMetadata imported = service.importMetadata(selectedFile.getPath());
 
         if (merge && existing != null) {
-            // Merge: add imported data to existing
+            // Merge: add imported data to existing, as typed edits
+            List<MetadataChange> changes = new ArrayList<>();
             imported.getTables().forEach((tableId, colorInfo) -> {
                 if (existing.getTableColor(tableId) == null) {
                     existing.setTableColor(tableId, colorInfo.getColor());
+                    changes.add(MetadataChange.tableColored(tableId, colorInfo.getColor()));
                 }
             });
 
             imported.getContainers().forEach(container -> {
                 if (existing.getContainer(container.getId()) == null) {
                     existing.addContainer(container);
+                    changes.add(MetadataChange.containerAdded(container));
                 }
             });
 
             imported.getNotes().forEach(note -> {
                 if (existing.getNote(note.getId()) == null) {
                     existing.addNote(note);
+                    changes.add(MetadataChange.noteAdded(note));
                 }
             });
 
-            saveMetadata(e, existing);
+            publishChanges(e, existing, changes);
         } else {
             // Replace with imported data
             saveMetadata(e, imported);
+            refreshDiagram(e);
         }
-
-        refreshDiagram(e);
     }
 }
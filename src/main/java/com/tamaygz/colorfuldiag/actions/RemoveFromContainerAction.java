@@ -4,9 +4,14 @@ import com.intellij.diagram.DiagramNode;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.tamaygz.colorfuldiag.model.ContainerInfo;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Action to remove selected tables from their containers.
@@ -29,7 +34,8 @@ public class RemoveFromContainerAction extends DiagramActionBase {
             return;
         }
 
-        boolean anyRemoved = false;
+        Set<ContainerInfo> changedContainers = new LinkedHashSet<>();
+        List<MetadataChange> colorChanges = new ArrayList<>();
 
         // Remove tables from their containers
         for (DiagramNode<?> node : selectedNodes) {
@@ -38,17 +44,20 @@ public class RemoveFromContainerAction extends DiagramActionBase {
                 ContainerInfo container = metadata.findContainerForTable(tableId);
                 if (container != null) {
                     container.removeTable(tableId);
+                    changedContainers.add(container);
                     // Clear the inherited color
                     metadata.removeTableColor(tableId);
-                    anyRemoved = true;
+                    colorChanges.add(MetadataChange.tableColored(tableId, null));
                 }
             }
         }
 
-        if (anyRemoved) {
-            saveMetadata(e, metadata);
-            refreshDiagram(e);
+        List<MetadataChange> changes = new ArrayList<>();
+        for (ContainerInfo container : changedContainers) {
+            changes.add(MetadataChange.containerTables(container));
         }
+        changes.addAll(colorChanges);
+        publishChanges(e, metadata, changes);
     }
 
     @Override
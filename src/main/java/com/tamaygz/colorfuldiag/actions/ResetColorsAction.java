@@ -5,9 +5,14 @@ import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.ui.Messages;
 import com.tamaygz.colorfuldiag.model.ContainerInfo;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * Action to reset colors for selected tables or all tables.
@@ -37,33 +42,51 @@ public class ResetColorsAction extends DiagramActionBase {
             );
 
             if (result == Messages.YES) {
+                List<MetadataChange> changes = new ArrayList<>();
+
                 // Clear all table colors
-                metadata.getTables().clear();
+                for (String tableId : metadata.getTables().keySet()) {
+                    changes.add(MetadataChange.tableColored(tableId, null));
+                }
+                metadata.clearTableColors();
 
                 // Also remove tables from containers
                 for (ContainerInfo container : metadata.getContainers()) {
-                    container.getTables().clear();
+                    if (!container.getTables().isEmpty()) {
+                        container.clearTables();
+                        changes.add(MetadataChange.containerTables(container));
+                    }
                 }
 
-                saveMetadata(e, metadata);
-                refreshDiagram(e);
+                publishChanges(e, metadata, changes);
             }
         } else {
+            List<MetadataChange> changes = new ArrayList<>();
+            Set<ContainerInfo> changedContainers = new LinkedHashSet<>();
+
             // Reset colors for selected tables only
             for (DiagramNode<?> node : selectedNodes) {
                 String tableId = getTableId(node);
                 if (tableId != null) {
-                    metadata.removeTableColor(tableId);
+                    if (metadata.getTableColor(tableId) != null) {
+                        metadata.removeTableColor(tableId);
+                        changes.add(MetadataChange.tableColored(tableId, null));
+                    }
 
                     // Also remove from any containers
                     for (ContainerInfo container : metadata.getContainers()) {
-                        container.removeTable(tableId);
+                        if (container.containsTable(tableId)) {
+                            container.removeTable(tableId);
+                            changedContainers.add(container);
+                        }
                     }
                 }
             }
 
-            saveMetadata(e, metadata);
-            refreshDiagram(e);
+            for (ContainerInfo container : changedContainers) {
+                changes.add(MetadataChange.containerTables(container));
+            }
+            publishChanges(e, metadata, changes);
         }
     }
 }
@@ -6,9 +6,9 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.intellij.openapi.project.Project;
-import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.ColorCache;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
-import com.tamaygz.colorfuldiag.model.TableColorInfo;
+import com.tamaygz.colorfuldiag.model.TableColors;
 import com.tamaygz.colorfuldiag.persistence.DiagramMetadataService;
 
 /**
@@ -23,6 +23,15 @@ public class DiagramColorApplicator {
         this.metadataService = DiagramMetadataService.getInstance(project);
     }
 
+    /**
+     * Gets the resolved colors for a table: base, header, border and text color.
+     * Returns {@link TableColors#NONE} if the table has no color of its own or from a container.
+     */
+    @NotNull
+    public TableColors getTableColors(@NotNull String diagramPath, @NotNull String tableId) {
+        return metadataService.getOrCreateMetadata(diagramPath).getResolvedColors(tableId);
+    }
+
     /**
      * Gets the effective color for a table.
      * Returns the table's own color, or the container's color if the table is in a container,
@@ -30,21 +39,15 @@ public class DiagramColorApplicator {
      */
     @Nullable
     public Color getEffectiveColor(@NotNull String diagramPath, @NotNull String tableId) {
-        DiagramMetadata metadata = metadataService.getOrCreateMetadata(diagramPath);
-
-        // Check for individual table color first
-        TableColorInfo tableColor = metadata.getTableColor(tableId);
-        if (tableColor != null && tableColor.getAwtColor() != null) {
-            return tableColor.getAwtColor();
-        }
-
-        // Check if table is in a container
-        ContainerInfo container = metadata.findContainerForTable(tableId);
-        if (container != null && container.getAwtColor() != null) {
-            return container.getAwtColor();
-        }
+        return getTableColors(diagramPath, tableId).getBase();
+    }
 
-        return null;
+    /**
+     * Resolves the effective color of a table within the given metadata.
+     */
+    @Nullable
+    public static Color getEffectiveColor(@NotNull DiagramMetadata metadata, @NotNull String tableId) {
+        return metadata.getResolvedColors(tableId).getBase();
     }
 
     /**
@@ -52,11 +55,7 @@ public class DiagramColorApplicator {
      */
     @Nullable
     public Color getHeaderColor(@NotNull String diagramPath, @NotNull String tableId) {
-        Color baseColor = getEffectiveColor(diagramPath, tableId);
-        if (baseColor == null) {
-            return null;
-        }
-        return darken(baseColor, 0.15f);
+        return getTableColors(diagramPath, tableId).getHeader();
     }
 
     /**
@@ -64,21 +63,7 @@ public class DiagramColorApplicator {
      */
     @Nullable
     public Color getBorderColor(@NotNull String diagramPath, @NotNull String tableId) {
-        Color baseColor = getEffectiveColor(diagramPath, tableId);
-        if (baseColor == null) {
-            return null;
-        }
-        return darken(baseColor, 0.3f);
-    }
-
-    /**
-     * Darkens a color by a given factor.
-     */
-    private static Color darken(Color color, float factor) {
-        int r = Math.max(0, (int) (color.getRed() * (1 - factor)));
-        int g = Math.max(0, (int) (color.getGreen() * (1 - factor)));
-        int b = Math.max(0, (int) (color.getBlue() * (1 - factor)));
-        return new Color(r, g, b, color.getAlpha());
+        return getTableColors(diagramPath, tableId).getBorder();
     }
 
     /**
@@ -88,18 +73,14 @@ public class DiagramColorApplicator {
         if (background == null) {
             return Color.BLACK;
         }
-        // Calculate relative luminance
-        double luminance = 0.299 * background.getRed()
-                + 0.587 * background.getGreen()
-                + 0.114 * background.getBlue();
-        return luminance > 128 ? Color.BLACK : Color.WHITE;
+        return ColorCache.isLight(background.getRGB()) ? Color.BLACK : Color.WHITE;
     }
 
     /**
      * Checks if a table has a custom color set.
      */
     public boolean hasCustomColor(@NotNull String diagramPath, @NotNull String tableId) {
-        return getEffectiveColor(diagramPath, tableId) != null;
+        return !getTableColors(diagramPath, tableId).isNone();
     }
 
     /**
@@ -109,6 +90,6 @@ public class DiagramColorApplicator {
         if (color == null) {
             return null;
         }
-        return new Color(color.getRed(), color.getGreen(), color.getBlue(), alpha);
+        return ColorCache.get(ColorCache.withAlpha(color.getRGB(), alpha));
     }
 }
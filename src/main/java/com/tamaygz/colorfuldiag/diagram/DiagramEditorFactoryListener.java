@@ -90,7 +90,7 @@ public class DiagramEditorFactoryListener implements EditorFactoryListener {
         try {
             FileEditorManager editorManager = FileEditorManager.getInstance(project);
             for (VirtualFile file : editorManager.getOpenFiles()) {
-                OverlayPanel panel = DiagramEditorListener.getOverlayPanel(file.getPath());
+                OverlayPanel panel = DiagramEditorListener.getOverlayPanel(project, file.getPath());
                 if (panel != null) {
                     panel.repaint();
                 }
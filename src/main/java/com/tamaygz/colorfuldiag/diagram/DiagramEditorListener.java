@@ -32,6 +32,8 @@ import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
 import com.tamaygz.colorfuldiag.persistence.DiagramMetadataService;
+import com.tamaygz.colorfuldiag.persistence.DiagramPathRegistry;
+import com.tamaygz.colorfuldiag.persistence.DiagramStatusListener;
 import com.tamaygz.colorfuldiag.ui.ColorfulDiagramsToolWindowFactory;
 
 /**
@@ -81,6 +83,7 @@ public class DiagramEditorListener implements FileEditorManagerListener {
             }
 
             LOG.info("✓ Diagram detected: " + file.getName());
+            DiagramPathRegistry.getInstance(project).register(file);
 
             JComponent component = fileEditor.getComponent();
             if (component == null) {
@@ -133,20 +136,31 @@ public class DiagramEditorListener implements FileEditorManagerListener {
     public void fileClosed(@NotNull FileEditorManager source, @NotNull VirtualFile file) {
         String key = file.getPath();
         editorComponents.remove(key);
+
+        Project project = source.getProject();
+        if (!project.isDisposed()) {
+            DiagramRefreshManager.getInstance(project).unregisterDiagram(key);
+            DiagramPathRegistry.getInstance(project).unregister(key);
+        }
         
         OverlayPanel panel = overlayPanels.remove(key);
         if (panel != null) {
+            // Release the pin the overlay took when it was attached
+            if (!project.isDisposed()) {
+                DiagramMetadataService.getInstance(project).unpin(file);
+            }
             Container parent = panel.getParent();
             if (parent != null) {
                 parent.remove(panel);
                 parent.repaint();
             }
         }
+        publishStatus(project);
         LOG.info("Cleaned up overlay for: " + file.getName());
     }
 
     private void attachOverlayPanel(Project project, VirtualFile file, JComponent editorComponent) {
-        String filePath = file.getPath();
+        String filePath = DiagramPathRegistry.getInstance(project).register(file);
         
         // Check if overlay already exists
         if (overlayPanels.containsKey(filePath)) {
@@ -163,15 +177,12 @@ public class DiagramEditorListener implements FileEditorManagerListener {
         overlayPanel.setProject(project);
         overlayPanel.setDiagramPath(filePath);
         
-        // Load metadata from service
+        // Load metadata from service, pinned in the cache while the diagram is open
         DiagramMetadataService service = DiagramMetadataService.getInstance(project);
+        service.pin(file);
         DiagramMetadata metadata = service.loadMetadata(file);
         overlayPanel.setMetadata(metadata);
-        
-        // Set up metadata change callback to save changes
-        overlayPanel.setOnMetadataChanged(updatedMetadata -> {
-            service.saveMetadata(file, updatedMetadata);
-        });
+        // Edits made in the overlay are published on MetadataChangeListener.TOPIC and saved by the service
 
         // Try multiple attachment strategies
         boolean attached = false;
@@ -191,9 +202,13 @@ public class DiagramEditorListener implements FileEditorManagerListener {
 
         if (attached) {
             overlayPanels.put(filePath, overlayPanel);
+            // Follow the diagram's scroll and zoom
+            OverlayViewportSync.install(editorComponent, overlayPanel);
+            publishStatus(project);
             LOG.info("✓ Overlay attached successfully to: " + file.getName());
             logComponentHierarchy(editorComponent);
         } else {
+            service.unpin(file);
             LOG.warn("✗ Failed to attach overlay to: " + file.getName());
         }
     }
@@ -512,11 +527,17 @@ public class DiagramEditorListener implements FileEditorManagerListener {
         });
     }
 
+    private static void publishStatus(Project project) {
+        if (!project.isDisposed()) {
+            project.getMessageBus().syncPublisher(DiagramStatusListener.TOPIC).statusChanged();
+        }
+    }
+
     /**
      * Updates the overlay panel metadata for a specific diagram.
      */
-    public static void updateOverlayMetadata(String diagramPath, DiagramMetadata metadata) {
-        OverlayPanel panel = overlayPanels.get(diagramPath);
+    public static void updateOverlayMetadata(@Nullable Project project, String diagramPath, DiagramMetadata metadata) {
+        OverlayPanel panel = getOverlayPanel(project, diagramPath);
         if (panel != null) {
             panel.setMetadata(metadata);
             panel.repaint();
@@ -524,26 +545,23 @@ public class DiagramEditorListener implements FileEditorManagerListener {
     }
 
     /**
-     * Gets the overlay panel for a diagram path.
+     * Gets the overlay panel for a diagram path. Other formats of the path are resolved
+     * through the project's {@link DiagramPathRegistry}.
      */
     @Nullable
-    public static OverlayPanel getOverlayPanel(String diagramPath) {
+    public static OverlayPanel getOverlayPanel(@Nullable Project project, String diagramPath) {
         // Try exact match first
         OverlayPanel panel = overlayPanels.get(diagramPath);
         if (panel != null) {
             return panel;
         }
-        
-        // Try partial match - the path format can vary
-        for (Map.Entry<String, OverlayPanel> entry : overlayPanels.entrySet()) {
-            String key = entry.getKey();
-            // Check if paths refer to the same diagram (may differ in format)
-            if (pathsMatch(key, diagramPath)) {
-                return entry.getValue();
-            }
+
+        // The path format can vary; overlays are keyed by the registered diagram path
+        if (project == null || project.isDisposed()) {
+            return null;
         }
-        
-        return null;
+        String key = DiagramPathRegistry.getInstance(project).resolve(diagramPath);
+        return key != null ? overlayPanels.get(key) : null;
     }
     
     /**
@@ -564,39 +582,20 @@ public class DiagramEditorListener implements FileEditorManagerListener {
         return new ConcurrentHashMap<>(overlayPanels);
     }
     
-    /**
-     * Check if two paths refer to the same diagram.
-     */
-    private static boolean pathsMatch(String path1, String path2) {
-        if (path1 == null || path2 == null) return false;
-        if (path1.equals(path2)) return true;
-        
-        // Normalize paths for comparison
-        String norm1 = normalizePath(path1);
-        String norm2 = normalizePath(path2);
-        return norm1.equals(norm2);
-    }
-    
-    /**
-     * Normalize a path for comparison.
-     */
-    private static String normalizePath(String path) {
-        // Replace various separators and normalize
-        return path.toLowerCase()
-                .replace("\\", "/")
-                .replace(":", "_")
-                .replace("//", "/");
-    }
-
     /**
      * Forces reattachment of overlay for a diagram.
      */
     public static void reattachOverlay(Project project, String diagramPath) {
         // Remove existing overlay first
-        OverlayPanel existingPanel = overlayPanels.remove(diagramPath);
-        if (existingPanel != null && existingPanel.getParent() != null) {
-            existingPanel.getParent().remove(existingPanel);
+        OverlayPanel existingPanel = overlayPanels.remove(DiagramPathRegistry.getInstance(project).canonicalize(diagramPath));
+        if (existingPanel != null) {
+            if (existingPanel.getParent() != null) {
+                existingPanel.getParent().remove(existingPanel);
+            }
+            // The new overlay takes its own pin
+            DiagramMetadataService.getInstance(project).unpin(existingPanel.getDiagramPath());
         }
+        publishStatus(project);
 
         // Get the file and editor directly
         FileEditorManager editorManager = FileEditorManager.getInstance(project);
@@ -672,6 +671,7 @@ public class DiagramEditorListener implements FileEditorManagerListener {
         
         LOG.info("Selection changed: " + (oldFile != null ? oldFile.getName() : "null") + 
                  " -> " + (newFile != null ? newFile.getName() : "null"));
+        publishStatus(project);
         
         // Hide all overlays first
         hideAllOverlays();
@@ -728,9 +728,10 @@ public class DiagramEditorListener implements FileEditorManagerListener {
     /**
      * Shows only the overlay for the specified diagram path, hiding all others.
      */
-    public static void showOnlyOverlay(String diagramPath) {
+    public static void showOnlyOverlay(@NotNull Project project, String diagramPath) {
+        String key = diagramPath != null ? DiagramPathRegistry.getInstance(project).canonicalize(diagramPath) : null;
         for (Map.Entry<String, OverlayPanel> entry : overlayPanels.entrySet()) {
-            boolean shouldShow = pathsMatch(entry.getKey(), diagramPath);
+            boolean shouldShow = entry.getKey().equals(key);
             entry.getValue().setVisible(shouldShow);
             if (shouldShow) {
                 entry.getValue().repaint();
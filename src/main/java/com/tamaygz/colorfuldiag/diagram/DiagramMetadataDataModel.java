@@ -19,7 +19,7 @@ public class DiagramMetadataDataModel {
 
     /**
      * Gets the effective color for a diagram element.
-     * Checks metadata for custom color first, then falls back to container color.
+     * Uses the table's own color first, then falls back to its container's color.
      */
     @Nullable
     public Color getElementColor(Object element) {
@@ -29,20 +29,7 @@ public class DiagramMetadataDataModel {
 
         // Try to get the element identifier
         String identifier = String.valueOf(element);
-        
-        // Check for individual color
-        var tableColor = metadata.getTableColor(identifier);
-        if (tableColor != null && tableColor.getAwtColor() != null) {
-            return tableColor.getAwtColor();
-        }
-
-        // Check if element is in a container
-        var container = metadata.findContainerForTable(identifier);
-        if (container != null && container.getAwtColor() != null) {
-            return container.getAwtColor();
-        }
-
-        return null;
+        return metadata.getResolvedColors(identifier).getBase();
     }
 
     /**
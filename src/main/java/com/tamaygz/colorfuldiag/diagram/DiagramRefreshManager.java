@@ -1,65 +1,177 @@
 package com.tamaygz.colorfuldiag.diagram;
 
 import java.awt.Color;
-import java.util.HashMap;
+import java.lang.ref.WeakReference;
+import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import com.intellij.diagram.DiagramBuilder;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.Alarm;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
+import com.tamaygz.colorfuldiag.model.ColorCache;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
+import com.tamaygz.colorfuldiag.persistence.DiagramPathRegistry;
 
 /**
  * Manages real-time updates to diagram visualization when metadata changes.
- * Ensures overlay panels are updated and diagram is properly refreshed.
+ * <p>
+ * Refreshes are coalesced per diagram. The first change after a quiet period is applied
+ * right away (leading edge); further changes within {@link #MIN_REFRESH_INTERVAL} only
+ * replace the pending metadata, and a single refresh with the latest snapshot runs once
+ * the burst settles (trailing edge). Each refresh is one overlay update plus one
+ * {@link DiagramBuilder#update}, always on the EDT.
+ * <p>
+ * Typed edits ({@link #applyChanges}) are handed to the overlay right away, since it
+ * only touches the affected elements; the diagram view is refreshed through the same
+ * coalescing, and only when an edit can change how tables are colored.
+ * <p>
+ * Diagrams are tracked by their {@link DiagramPathRegistry} key, so the same diagram
+ * named by differently formatted paths shares one refresh.
  */
-public class DiagramRefreshManager {
-    
-    private final Map<String, DiagramBuilder> diagramBuilders = new WeakHashMap<>();
-    private final Map<String, Long> lastRefreshTime = new HashMap<>();
-    private static final long MIN_REFRESH_INTERVAL = 100; // ms
+@Service(Service.Level.PROJECT)
+public final class DiagramRefreshManager implements Disposable {
+    private static final Logger LOG = Logger.getInstance(DiagramRefreshManager.class);
+    private static final int MIN_REFRESH_INTERVAL = 100; // ms
+    // Edits that can change the color a table node resolves to
+    private static final Set<MetadataChange.Kind> TABLE_COLOR_KINDS = EnumSet.of(
+            MetadataChange.Kind.TABLE_COLORED, MetadataChange.Kind.CONTAINER_ADDED,
+            MetadataChange.Kind.CONTAINER_REMOVED, MetadataChange.Kind.CONTAINER_RECOLORED,
+            MetadataChange.Kind.CONTAINER_TABLES, MetadataChange.Kind.CONTAINERS_REORDERED);
+
+    // Weak, and dropped when the builder is disposed, so a diagram whose editor goes away
+    // without fileClosed doesn't keep its builder graph alive
+    private final Map<String, WeakReference<DiagramBuilder>> diagramBuilders = new ConcurrentHashMap<>();
+    // Latest metadata per diagram not yet pushed to its overlay
+    private final Map<String, DiagramMetadata> pendingMetadata = new ConcurrentHashMap<>();
+    // Diagrams whose view needs an update without new overlay metadata
+    private final Set<String> pendingViewUpdates = ConcurrentHashMap.newKeySet();
+    // System.nanoTime() of each diagram's last refresh
+    private final Map<String, Long> lastRefreshTime = new ConcurrentHashMap<>();
+    private final MergingUpdateQueue refreshQueue;
+    private final Project project;
+    private final DiagramPathRegistry pathRegistry;
 
-    @SuppressWarnings("unused")
     public DiagramRefreshManager(@NotNull Project project) {
-        // Project is kept for potential future use
+        this.project = project;
+        this.pathRegistry = DiagramPathRegistry.getInstance(project);
+        this.refreshQueue = new MergingUpdateQueue("ColorfulDiagrams.Refresh", MIN_REFRESH_INTERVAL,
+                true, null, this, null, Alarm.ThreadToUse.SWING_THREAD);
+    }
+
+    public static DiagramRefreshManager getInstance(@NotNull Project project) {
+        return project.getService(DiagramRefreshManager.class);
     }
 
     /**
      * Registers a diagram builder for tracking.
-     * Called when a diagram editor is created.
+     * Called when an action runs with a diagram builder in context.
      */
     public void registerDiagram(@NotNull String diagramPath, @NotNull DiagramBuilder builder) {
-        diagramBuilders.put(diagramPath, builder);
+        String key = pathRegistry.canonicalize(diagramPath);
+        WeakReference<DiagramBuilder> previous = diagramBuilders.put(key, new WeakReference<>(builder));
+        if (previous == null || previous.get() != builder) {
+            Disposer.tryRegister(builder, () -> diagramBuilders.computeIfPresent(key,
+                    (path, reference) -> reference.get() == builder ? null : reference));
+        }
     }
 
     /**
-     * Updates visualization for a specific diagram after metadata changes.
-     * Refreshes both the overlay panel and the diagram view.
+     * Schedules an update of the overlay and diagram view after metadata changes.
+     * May be called from any thread; bursts of calls for the same diagram result in at
+     * most one refresh at the start and one at the end of the burst.
      */
     public void refreshDiagramVisualization(@NotNull String diagramPath, @NotNull DiagramMetadata metadata) {
-        // Debounce rapid updates
-        long now = System.currentTimeMillis();
+        String key = pathRegistry.canonicalize(diagramPath);
+        pendingMetadata.put(key, metadata);
+        schedule(key);
+    }
+
+    /**
+     * Applies typed edits to the diagram's overlay and, if any of them can change table
+     * colors, schedules a diagram view update. May be called from any thread.
+     */
+    public void applyChanges(@NotNull String diagramPath, @NotNull DiagramMetadata metadata,
+                             @NotNull List<MetadataChange> changes) {
+        if (!ApplicationManager.getApplication().isDispatchThread()) {
+            ApplicationManager.getApplication().invokeLater(
+                    () -> applyChanges(diagramPath, metadata, changes), project.getDisposed());
+            return;
+        }
+        OverlayPanel overlay = DiagramEditorListener.getOverlayPanel(project, diagramPath);
+        if (overlay != null) {
+            overlay.applyChanges(metadata, changes);
+        }
+        if (affectsTableColors(changes)) {
+            String key = pathRegistry.canonicalize(diagramPath);
+            pendingViewUpdates.add(key);
+            schedule(key);
+        }
+    }
+
+    private static boolean affectsTableColors(List<MetadataChange> changes) {
+        for (MetadataChange change : changes) {
+            if (TABLE_COLOR_KINDS.contains(change.getKind())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void schedule(@NotNull String diagramPath) {
         Long lastRefresh = lastRefreshTime.get(diagramPath);
-        if (lastRefresh != null && (now - lastRefresh) < MIN_REFRESH_INTERVAL) {
+        boolean quiet = lastRefresh == null
+                || System.nanoTime() - lastRefresh >= MIN_REFRESH_INTERVAL * 1_000_000L;
+        if (quiet && ApplicationManager.getApplication().isDispatchThread()) {
+            flush(diagramPath);
             return;
         }
-        lastRefreshTime.put(diagramPath, now);
-
-        // Update overlay panel
-        DiagramEditorListener.updateOverlayMetadata(diagramPath, metadata);
-
-        // Refresh diagram builder if available
-        DiagramBuilder builder = diagramBuilders.get(diagramPath);
-        if (builder != null) {
-            try {
-                // Request diagram update
-                builder.update(true, false);
-            } catch (Exception e) {
-                // Silently fail if diagram is disposed or unavailable
+        // Updates with the same identity merge, so a burst leaves one refresh in the queue
+        refreshQueue.queue(Update.create(diagramPath, () -> flush(diagramPath)));
+    }
+
+    /**
+     * Applies the pending metadata and view update of a diagram, if any is still pending.
+     */
+    private void flush(@NotNull String diagramPath) {
+        DiagramMetadata metadata = pendingMetadata.remove(diagramPath);
+        boolean viewUpdate = pendingViewUpdates.remove(diagramPath);
+        if (metadata == null && !viewUpdate) {
+            return;
+        }
+        lastRefreshTime.put(diagramPath, System.nanoTime());
+
+        if (metadata != null) {
+            DiagramEditorListener.updateOverlayMetadata(project, diagramPath, metadata);
+        }
+
+        WeakReference<DiagramBuilder> reference = diagramBuilders.get(diagramPath);
+        DiagramBuilder builder = reference != null ? reference.get() : null;
+        if (builder == null) {
+            if (reference != null) {
+                diagramBuilders.remove(diagramPath, reference);
             }
+            return;
+        }
+        try {
+            builder.update(true, false);
+        } catch (Exception e) {
+            // Diagram was disposed or is unavailable; drop it until it is registered again
+            LOG.debug("Could not refresh diagram: " + diagramPath, e);
+            diagramBuilders.remove(diagramPath, reference);
         }
     }
 
@@ -67,8 +179,19 @@ public class DiagramRefreshManager {
      * Clears registered diagram on close.
      */
     public void unregisterDiagram(@NotNull String diagramPath) {
-        diagramBuilders.remove(diagramPath);
-        lastRefreshTime.remove(diagramPath);
+        String key = pathRegistry.canonicalize(diagramPath);
+        diagramBuilders.remove(key);
+        pendingMetadata.remove(key);
+        pendingViewUpdates.remove(key);
+        lastRefreshTime.remove(key);
+    }
+
+    @Override
+    public void dispose() {
+        diagramBuilders.clear();
+        pendingMetadata.clear();
+        pendingViewUpdates.clear();
+        lastRefreshTime.clear();
     }
 
     /**
@@ -76,21 +199,9 @@ public class DiagramRefreshManager {
      * Used to determine node coloring.
      */
     @Nullable
-    public Color getElementColor(@NotNull String diagramPath, @NotNull String elementId, 
+    public Color getElementColor(@NotNull String diagramPath, @NotNull String elementId,
                                   @NotNull DiagramMetadata metadata) {
-        // Check for individual table color first
-        var tableColor = metadata.getTableColor(elementId);
-        if (tableColor != null) {
-            return tableColor.getAwtColor();
-        }
-
-        // Check if element is in a container
-        var container = metadata.findContainerForTable(elementId);
-        if (container != null) {
-            return container.getAwtColor();
-        }
-
-        return null;
+        return metadata.getResolvedColors(elementId).getBase();
     }
 
     /**
@@ -113,9 +224,6 @@ public class DiagramRefreshManager {
      * Darkens a color by the specified factor.
      */
     private static Color darken(Color color, float factor) {
-        int r = Math.max(0, (int) (color.getRed() * (1 - factor)));
-        int g = Math.max(0, (int) (color.getGreen() * (1 - factor)));
-        int b = Math.max(0, (int) (color.getBlue() * (1 - factor)));
-        return new Color(r, g, b, color.getAlpha());
+        return ColorCache.get(ColorCache.darken(color.getRGB(), factor));
     }
 }
@@ -0,0 +1,123 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Word-wrapped lines of a sticky note's text, computed once and reused across paints.
+ * <p>
+ * A layout is only valid for the text, box size, font and render context it was made
+ * for; {@link #isValidFor} is checked on every paint, so editing or resizing a note
+ * simply produces a new layout. Lines past the bottom of the box are not kept.
+ * <p>
+ * Wrapping is greedy on spaces and honors line breaks. A token wider than the box (long
+ * identifiers in SQL snippets) is broken between user-perceived characters rather than
+ * overflowing, so emoji and supplementary-plane text are never split.
+ * Each word is measured once, so laying out is linear in the text length.
+ */
+final class NoteTextLayout {
+    private final String text;
+    private final Font font;
+    private final FontRenderContext frc;
+    private final int maxWidth;
+    private final int maxHeight;
+    private final int lineHeight;
+    private final String[] lines;
+
+    private NoteTextLayout(String text, FontMetrics fm, int maxWidth, int maxHeight, String[] lines) {
+        this.text = text;
+        this.font = fm.getFont();
+        this.frc = fm.getFontRenderContext();
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.lineHeight = fm.getHeight();
+        this.lines = lines;
+    }
+
+    boolean isValidFor(@NotNull String text, @NotNull FontMetrics fm, int maxWidth, int maxHeight) {
+        return this.maxWidth == maxWidth && this.maxHeight == maxHeight
+                && (this.text == text || this.text.equals(text))
+                && font.equals(fm.getFont()) && frc.equals(fm.getFontRenderContext());
+    }
+
+    /**
+     * Draws the lines with the first baseline one line height below {@code y}.
+     */
+    void draw(@NotNull Graphics2D g, int x, int y) {
+        int baseline = y + lineHeight;
+        for (String line : lines) {
+            g.drawString(line, x, baseline);
+            baseline += lineHeight;
+        }
+    }
+
+    @NotNull
+    static NoteTextLayout create(@NotNull String text, @NotNull FontMetrics fm, int maxWidth, int maxHeight) {
+        int maxLines = fm.getHeight() > 0 ? Math.max(0, maxHeight / fm.getHeight()) : 0;
+        List<String> lines = new ArrayList<>();
+        int spaceWidth = fm.charWidth(' ');
+
+        paragraphs:
+        for (String paragraph : text.split("\r?\n", -1)) {
+            StringBuilder line = new StringBuilder();
+            int lineWidth = 0;
+            for (String word : paragraph.split(" ")) {
+                if (lines.size() >= maxLines) {
+                    // The rest would be clipped anyway
+                    break paragraphs;
+                }
+                int wordWidth = fm.stringWidth(word);
+                int width = line.length() > 0 ? lineWidth + spaceWidth + wordWidth : wordWidth;
+                if (width <= maxWidth) {
+                    if (line.length() > 0) {
+                        line.append(' ');
+                    }
+                    line.append(word);
+                    lineWidth = width;
+                    continue;
+                }
+                if (line.length() > 0) {
+                    lines.add(line.toString());
+                    line.setLength(0);
+                }
+                if (wordWidth <= maxWidth) {
+                    line.append(word);
+                    lineWidth = wordWidth;
+                    continue;
+                }
+                // Break an over-long token between characters, never inside a surrogate
+                // pair or a base character and its combining marks
+                lineWidth = 0;
+                BreakIterator characters = BreakIterator.getCharacterInstance();
+                characters.setText(word);
+                int start = characters.first();
+                for (int end = characters.next(); end != BreakIterator.DONE; start = end, end = characters.next()) {
+                    int charWidth = end - start == 1
+                            ? fm.charWidth(word.charAt(start))
+                            : fm.stringWidth(word.substring(start, end));
+                    if (line.length() > 0 && lineWidth + charWidth > maxWidth) {
+                        lines.add(line.toString());
+                        line.setLength(0);
+                        lineWidth = 0;
+                    }
+                    line.append(word, start, end);
+                    lineWidth += charWidth;
+                }
+            }
+            if (line.length() > 0 || paragraph.isEmpty()) {
+                lines.add(line.toString());
+            }
+        }
+        if (lines.size() > maxLines) {
+            lines.subList(maxLines, lines.size()).clear();
+        }
+        return new NoteTextLayout(text, fm, maxWidth, maxHeight, lines.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,63 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import java.awt.Graphics2D;
+import java.util.Arrays;
+
+import com.tamaygz.colorfuldiag.model.ColorCache;
+
+/**
+ * Screen-space grid that merges elements too small to draw individually.
+ * <p>
+ * Each tiny element marks the cell under its center with its color; the last one wins,
+ * which is the top-most when elements are added back to front. Painting fills each marked
+ * cell once, so thousands of tiny elements cost at most one rectangle per cell. The cell
+ * array is reused between frames.
+ */
+final class OverlayAggregate {
+    private int cellSize;
+    private int columns;
+    private int rows;
+    private int[] cells = new int[0];
+    private boolean empty = true;
+
+    void reset(int width, int height, int cellSize) {
+        if (!empty) {
+            Arrays.fill(cells, 0, columns * rows, ColorCache.NONE);
+            empty = true;
+        }
+        this.cellSize = Math.max(1, cellSize);
+        this.columns = Math.max(0, (width + this.cellSize - 1) / this.cellSize);
+        this.rows = Math.max(0, (height + this.cellSize - 1) / this.cellSize);
+        if (cells.length < columns * rows) {
+            cells = new int[columns * rows];
+        }
+    }
+
+    /**
+     * Marks the cell at a screen position; positions outside the grid are ignored.
+     */
+    void add(double screenX, double screenY, int argb) {
+        int column = (int) Math.floor(screenX / cellSize);
+        int row = (int) Math.floor(screenY / cellSize);
+        if (column < 0 || row < 0 || column >= columns || row >= rows || argb == ColorCache.NONE) {
+            return;
+        }
+        cells[row * columns + column] = argb;
+        empty = false;
+    }
+
+    void paint(Graphics2D g) {
+        if (empty) {
+            return;
+        }
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int argb = cells[row * columns + column];
+                if (argb != ColorCache.NONE) {
+                    g.setColor(ColorCache.get(argb));
+                    g.fillRect(column * cellSize, row * cellSize, cellSize, cellSize);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import com.intellij.openapi.util.registry.Registry;
+
+/**
+ * Level-of-detail thresholds for painting the overlay when zoomed out.
+ * <ul>
+ *   <li>Below {@code simplifyBelowZoom}, elements are drawn as plain filled rectangles:
+ *       no text, titles, shadows, fold corners or dashed borders.</li>
+ *   <li>Elements smaller than {@code aggregatePixels} on screen are not drawn one by
+ *       one; they are merged into a coarse grid of cells of that size.</li>
+ * </ul>
+ * Thresholds are read from the {@code colorfuldiag.overlay.lod.*} registry keys.
+ */
+final class OverlayDetail {
+    private static final String SIMPLIFY_KEY = "colorfuldiag.overlay.lod.simplifyBelowZoom";
+    private static final String AGGREGATE_KEY = "colorfuldiag.overlay.lod.aggregatePixels";
+    private static final double DEFAULT_SIMPLIFY_BELOW_ZOOM = 0.5;
+    private static final int DEFAULT_AGGREGATE_PIXELS = 6;
+
+    static final OverlayDetail FULL = new OverlayDetail(0, 0);
+
+    private final double simplifyBelowZoom;
+    private final int aggregatePixels;
+
+    OverlayDetail(double simplifyBelowZoom, int aggregatePixels) {
+        this.simplifyBelowZoom = simplifyBelowZoom;
+        this.aggregatePixels = aggregatePixels;
+    }
+
+    /**
+     * Reads the configured thresholds from the IDE registry.
+     */
+    static OverlayDetail fromRegistry() {
+        double simplifyBelowZoom;
+        int aggregatePixels;
+        try {
+            simplifyBelowZoom = Registry.doubleValue(SIMPLIFY_KEY);
+        } catch (Exception e) {
+            // Key missing (e.g. outside the IDE) - use the default
+            simplifyBelowZoom = DEFAULT_SIMPLIFY_BELOW_ZOOM;
+        }
+        try {
+            aggregatePixels = Registry.intValue(AGGREGATE_KEY);
+        } catch (Exception e) {
+            aggregatePixels = DEFAULT_AGGREGATE_PIXELS;
+        }
+        return new OverlayDetail(simplifyBelowZoom, aggregatePixels);
+    }
+
+    boolean isSimplified(double zoom) {
+        return zoom < simplifyBelowZoom;
+    }
+
+    /**
+     * Returns true if an element of the given model size is too small on screen to draw.
+     */
+    boolean isAggregated(int width, int height, double zoom) {
+        return aggregatePixels > 0 && Math.max(width, height) * zoom < aggregatePixels;
+    }
+
+    int getAggregatePixels() {
+        return aggregatePixels;
+    }
+}
@@ -0,0 +1,200 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+
+/**
+ * Uniform-grid spatial index over overlay element bounds, used for hit testing.
+ * <p>
+ * Each element is registered in every grid cell its bounds (grown by a fixed margin)
+ * overlap, so a point query only looks at the few elements sharing its cell instead of
+ * scanning the whole diagram. Elements carry a z-order rank; queries return the
+ * top-most hit. Queries don't allocate, which matters because Swing calls
+ * {@link OverlayPanel#contains(int, int)} for every mouse event.
+ * <p>
+ * Bounds are copied in when an element is indexed. Callers must {@link #update} after
+ * moving or resizing an element and {@link #rebuild} after reordering. Not thread-safe;
+ * used on the EDT only.
+ */
+final class OverlayHitIndex<T> {
+
+    /**
+     * Reads an element's bounds as {@code [x, y, width, height]} into {@code out}.
+     */
+    @FunctionalInterface
+    interface BoundsReader<T> {
+        void read(T element, int[] out);
+    }
+
+    private static final int CELL_SHIFT = 7; // 128px cells
+
+    private final BoundsReader<T> boundsReader;
+    private final int margin;
+    private final Long2ObjectOpenHashMap<IntArrayList> cells = new Long2ObjectOpenHashMap<>();
+    private final Map<T, Integer> slots = new IdentityHashMap<>();
+    private final IntArrayList freeSlots = new IntArrayList();
+    private final int[] scratch = new int[4];
+
+    // Per-slot state: element, exact bounds and z-order rank
+    private Object[] elements = new Object[16];
+    private int[] xs = new int[16];
+    private int[] ys = new int[16];
+    private int[] widths = new int[16];
+    private int[] heights = new int[16];
+    private int[] ranks = new int[16];
+    private int slotCount;
+    private int nextRank;
+
+    /**
+     * @param margin the largest margin that will be passed to {@link #findAt}
+     */
+    OverlayHitIndex(@NotNull BoundsReader<T> boundsReader, int margin) {
+        this.boundsReader = boundsReader;
+        this.margin = margin;
+    }
+
+    /**
+     * Re-indexes all elements; the list order is the z-order, back to front.
+     */
+    void rebuild(@NotNull List<T> elementsBackToFront) {
+        cells.clear();
+        slots.clear();
+        freeSlots.clear();
+        Arrays.fill(elements, 0, slotCount, null);
+        slotCount = 0;
+        nextRank = 0;
+        for (T element : elementsBackToFront) {
+            add(element);
+        }
+    }
+
+    /**
+     * Indexes an element on top of everything indexed so far.
+     */
+    void add(@NotNull T element) {
+        if (slots.containsKey(element)) {
+            update(element);
+            return;
+        }
+        int slot = freeSlots.isEmpty() ? slotCount++ : freeSlots.popInt();
+        ensureCapacity(slotCount);
+        elements[slot] = element;
+        ranks[slot] = nextRank++;
+        slots.put(element, slot);
+        readBounds(slot, element);
+        forEachCell(slot, true);
+    }
+
+    void remove(@NotNull T element) {
+        Integer slot = slots.remove(element);
+        if (slot == null) {
+            return;
+        }
+        forEachCell(slot, false);
+        elements[slot] = null;
+        freeSlots.add(slot.intValue());
+    }
+
+    /**
+     * Re-reads the bounds of an element after it moved or was resized.
+     */
+    void update(@NotNull T element) {
+        Integer slot = slots.get(element);
+        if (slot == null) {
+            return;
+        }
+        boundsReader.read(element, scratch);
+        if (scratch[0] == xs[slot] && scratch[1] == ys[slot]
+                && scratch[2] == widths[slot] && scratch[3] == heights[slot]) {
+            return;
+        }
+        forEachCell(slot, false);
+        readBounds(slot, element);
+        forEachCell(slot, true);
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    /**
+     * Returns the top-most element whose bounds, grown by {@code grow} on each side,
+     * contain the point. {@code grow} must not exceed the margin given at construction.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    T findAt(int x, int y, int grow) {
+        IntArrayList cell = cells.get(key(x >> CELL_SHIFT, y >> CELL_SHIFT));
+        if (cell == null) {
+            return null;
+        }
+        int best = -1;
+        for (int i = 0, n = cell.size(); i < n; i++) {
+            int slot = cell.getInt(i);
+            if ((best < 0 || ranks[slot] > ranks[best])
+                    && x >= xs[slot] - grow && x < xs[slot] + widths[slot] + grow
+                    && y >= ys[slot] - grow && y < ys[slot] + heights[slot] + grow) {
+                best = slot;
+            }
+        }
+        return best >= 0 ? (T) elements[best] : null;
+    }
+
+    private void readBounds(int slot, T element) {
+        boundsReader.read(element, scratch);
+        xs[slot] = scratch[0];
+        ys[slot] = scratch[1];
+        widths[slot] = Math.max(0, scratch[2]);
+        heights[slot] = Math.max(0, scratch[3]);
+    }
+
+    private void forEachCell(int slot, boolean add) {
+        int minX = (xs[slot] - margin) >> CELL_SHIFT;
+        int minY = (ys[slot] - margin) >> CELL_SHIFT;
+        int maxX = (xs[slot] + widths[slot] + margin) >> CELL_SHIFT;
+        int maxY = (ys[slot] + heights[slot] + margin) >> CELL_SHIFT;
+        for (int cx = minX; cx <= maxX; cx++) {
+            for (int cy = minY; cy <= maxY; cy++) {
+                long key = key(cx, cy);
+                if (add) {
+                    IntArrayList cell = cells.get(key);
+                    if (cell == null) {
+                        cell = new IntArrayList(4);
+                        cells.put(key, cell);
+                    }
+                    cell.add(slot);
+                } else {
+                    IntArrayList cell = cells.get(key);
+                    if (cell != null && cell.rem(slot) && cell.isEmpty()) {
+                        cells.remove(key);
+                    }
+                }
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= elements.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, elements.length * 2);
+        elements = Arrays.copyOf(elements, newLength);
+        xs = Arrays.copyOf(xs, newLength);
+        ys = Arrays.copyOf(ys, newLength);
+        widths = Arrays.copyOf(widths, newLength);
+        heights = Arrays.copyOf(heights, newLength);
+        ranks = Arrays.copyOf(ranks, newLength);
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,36 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.persistence.DiagramPathRegistry;
+import com.tamaygz.colorfuldiag.persistence.MetadataReloadListener;
+
+/**
+ * Pushes metadata that was reloaded from disk into the open overlay panels,
+ * so external changes show up without reattaching the overlay.
+ */
+public class OverlayMetadataReloader implements MetadataReloadListener {
+
+    private static final Logger LOG = Logger.getInstance(OverlayMetadataReloader.class);
+
+    private final Project project;
+
+    public OverlayMetadataReloader(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void metadataReloaded(@NotNull String metadataPath, @NotNull DiagramMetadata metadata) {
+        if (project.isDisposed()) {
+            return;
+        }
+        String diagramPath = DiagramPathRegistry.getInstance(project).resolve(metadataPath);
+        if (diagramPath != null) {
+            LOG.info("Refreshing overlay from reloaded metadata: " + diagramPath);
+            DiagramRefreshManager.getInstance(project).refreshDiagramVisualization(diagramPath, metadata);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.openapi.project.Project;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
+import com.tamaygz.colorfuldiag.persistence.MetadataChangeListener;
+
+/**
+ * Pushes typed metadata edits into the open overlay and diagram view of the edited
+ * diagram, through {@link DiagramRefreshManager}.
+ */
+public class OverlayMetadataUpdater implements MetadataChangeListener {
+
+    private final Project project;
+
+    public OverlayMetadataUpdater(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void metadataChanged(@NotNull String diagramPath, @NotNull DiagramMetadata metadata,
+                                @NotNull List<MetadataChange> changes) {
+        if (project.isDisposed()) {
+            return;
+        }
+        DiagramRefreshManager.getInstance(project).applyChanges(diagramPath, metadata, changes);
+    }
+}
@@ -1,5 +1,6 @@
 package com.tamaygz.colorfuldiag.diagram;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Cursor;
@@ -11,26 +12,37 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.event.HierarchyEvent;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Consumer;
 
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.SwingUtilities;
 
+import org.jetbrains.annotations.NotNull;
+
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.util.ui.UIUtil;
+import com.tamaygz.colorfuldiag.metrics.Metric;
+import com.tamaygz.colorfuldiag.metrics.PluginMetrics;
+import com.tamaygz.colorfuldiag.model.ColorCache;
 import com.tamaygz.colorfuldiag.model.ContainerInfo;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
 import com.tamaygz.colorfuldiag.model.TableColorInfo;
+import com.tamaygz.colorfuldiag.persistence.DiagramStatusListener;
+import com.tamaygz.colorfuldiag.persistence.MetadataChangeListener;
 import com.tamaygz.colorfuldiag.ui.ColorPickerDialog;
 import com.tamaygz.colorfuldiag.ui.QuickColorPickerPopup;
 import com.tamaygz.colorfuldiag.ui.RenameContainerDialog;
@@ -60,8 +72,69 @@ public class OverlayPanel extends JPanel {
     private ContainerInfo hoveredContainer;
     private StickyNoteInfo hoveredNote;
     
-    // Callback for when metadata changes
-    private Consumer<DiagramMetadata> onMetadataChanged;
+    // Hit-test indexes over element bounds. Edits made here update them incrementally;
+    // they are rebuilt when the metadata is replaced or reordered.
+    private final OverlayHitIndex<ContainerInfo> containerIndex =
+            new OverlayHitIndex<>(OverlayPanel::readContainerBounds, HANDLE_SIZE);
+    private final OverlayHitIndex<StickyNoteInfo> noteIndex =
+            new OverlayHitIndex<>(OverlayPanel::readNoteBounds, HANDLE_SIZE);
+    private DiagramMetadata indexedMetadata;
+    private boolean hitIndexStale = true;
+    private final int[] boundsScratch = new int[4];
+    
+    // View transform following the diagram's scroll and zoom: screen = model * scale + offset.
+    // Element coordinates are model coordinates; mouse events are converted on the way in.
+    private int viewOffsetX;
+    private int viewOffsetY;
+    private double viewScale = 1.0;
+    // Set once OverlayViewportSync drives the transform; metadata shown from then on must be in view coordinates
+    private boolean followsView;
+    // The view coordinates marker was set on metadata with no elements and isn't saved yet
+    private boolean markerUnsaved;
+    
+    // Level of detail, re-read from the registry whenever the layers are rendered
+    private OverlayDetail detail = OverlayDetail.FULL;
+    private final OverlayAggregate aggregate = new OverlayAggregate();
+    
+    // Offscreen layers holding every element except the live (selected/hovered) ones.
+    // Containers and notes get separate layers so live containers still draw below notes.
+    // Both are dropped while the panel is hidden.
+    private BufferedImage containerLayer;
+    private BufferedImage noteLayer;
+    private boolean layersValid;
+    private int layerWidth;
+    private int layerHeight;
+    private DiagramMetadata layerMetadata;
+    private ContainerInfo layerSelectedContainer;
+    private ContainerInfo layerHoveredContainer;
+    private StickyNoteInfo layerSelectedNote;
+    private StickyNoteInfo layerHoveredNote;
+    // Transform the layers were rendered with; a pure offset change shifts them instead
+    private int layerOffsetX;
+    private int layerOffsetY;
+    private double layerScale;
+    // Aggregate cells are laid out on the panel, so layers with any can't be shifted
+    private boolean layerAggregated;
+    
+    // Paint resources reused across frames so steady-state painting doesn't allocate.
+    // Fonts are derived once per base font; the shapes and arrays are refilled per element.
+    private Font paintFontBase;
+    private Font titleFont;
+    private Font noteFont;
+    private Font previewFont;
+    private Font legendTitleFont;
+    private Font legendFont;
+    private final RoundRectangle2D.Float roundRect = new RoundRectangle2D.Float();
+    private final int[] paintBounds = new int[4];
+    private final int[] foldXs = new int[3];
+    private final int[] foldYs = new int[3];
+    private final Rectangle clipScratch = new Rectangle();
+    
+    // Wrapped note text, by note instance; entries re-validate themselves on every paint
+    private final Map<StickyNoteInfo, NoteTextLayout> noteTextLayouts = new IdentityHashMap<>();
+    
+    // Set while this panel publishes its own edit, so it doesn't apply the edit a second time
+    private boolean publishingChange;
     
     // Cached rendering hints for performance (learned from Swing best practices)
     private static final Map<RenderingHints.Key, Object> RENDERING_HINTS = Map.of(
@@ -80,6 +153,40 @@ public class OverlayPanel extends JPanel {
     private static final float CONTAINER_ALPHA = 0.15f;
     private static final float NOTE_ALPHA = 0.9f;
 
+    // Paint colors; element colors are resolved through ColorCache so painting doesn't allocate
+    private static final int DEFAULT_CONTAINER_ARGB = 0xFF45B7D1;
+    private static final int PREVIEW_NOTE_ARGB = 0xFFFFEB3B;
+    // Extra model-space margin around element bounds for shadows, borders and handles
+    private static final int CULL_MARGIN = HANDLE_SIZE + 8;
+    // Model-space room for the "width x height" label under the drawing preview
+    private static final int PREVIEW_LABEL_WIDTH = 90;
+    private static final int PREVIEW_LABEL_HEIGHT = 20;
+    // Alpha of merged tiny containers, stronger than CONTAINER_ALPHA so they stay visible
+    private static final int AGGREGATE_CONTAINER_ALPHA = 96;
+    // Strokes are immutable, so one instance per style is shared by every paint
+    private static final BasicStroke SIMPLIFIED_STROKE = new BasicStroke(1f);
+    private static final BasicStroke HANDLE_STROKE = new BasicStroke(1f);
+    private static final BasicStroke CONTAINER_STROKE = createDashedStroke(1f, 5, 3);
+    private static final BasicStroke CONTAINER_STROKE_HOVERED = createDashedStroke(1.5f, 5, 3);
+    private static final BasicStroke CONTAINER_STROKE_SELECTED = createDashedStroke(2.5f, 5, 3);
+    private static final BasicStroke NOTE_STROKE = new BasicStroke(1f);
+    private static final BasicStroke NOTE_STROKE_HOVERED = new BasicStroke(1.5f);
+    private static final BasicStroke NOTE_STROKE_SELECTED = new BasicStroke(2.5f);
+    private static final BasicStroke PREVIEW_STROKE = createDashedStroke(2f, 8, 4);
+    private static final BasicStroke DEBUG_STROKE = createDashedStroke(1f, 5, 5);
+    private static final Color DEBUG_BORDER_COLOR = new Color(0, 150, 255, 50);
+    private static final Color READY_TEXT_COLOR = new Color(100, 100, 100, 100);
+    // Screen area the table color legend can cover (eight rows and the "more" line below
+    // them), measured from the right edge
+    private static final int LEGEND_INSET = 200;
+    private static final int LEGEND_Y = 10;
+    private static final int LEGEND_WIDTH = 191;
+    private static final int LEGEND_HEIGHT = 166;
+    private static final Color LEGEND_BACKGROUND = new Color(40, 40, 40, 200);
+    private static final Color LEGEND_BORDER = new Color(80, 80, 80);
+    private static final Color NOTE_SHADOW = new Color(0, 0, 0, 30);
+    private static final Color NOTE_SHADOW_HOVERED = new Color(0, 0, 0, 50);
+
     private enum ResizeHandle {
         NONE, N, S, E, W, NE, NW, SE, SW
     }
@@ -91,6 +198,12 @@ public class OverlayPanel extends JPanel {
         setFocusable(true); // Enable keyboard input
         setupMouseListeners();
         setupKeyboardListeners();
+        // Hidden overlays (inactive editor tabs) shouldn't hold two panel-sized images
+        addHierarchyListener(e -> {
+            if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && !isShowing()) {
+                releaseLayers();
+            }
+        });
         LOG.info("OverlayPanel created");
     }
     
@@ -108,32 +221,210 @@ public class OverlayPanel extends JPanel {
     
     public void setDrawingMode(DrawingMode mode) {
         this.drawingMode = mode;
+        // The preview is the only thing drawn differently per mode
+        Rectangle oldPreview = drawingPreview;
         drawingPreview = null;
         if (mode != DrawingMode.NONE) {
             setCursor(Cursor.getPredefinedCursor(Cursor.CROSSHAIR_CURSOR));
         } else {
             setCursor(Cursor.getDefaultCursor());
         }
-        repaint();
+        if (oldPreview != null) {
+            repaintArea(previewDamage(oldPreview));
+        }
     }
     
     public DrawingMode getDrawingMode() {
         return drawingMode;
     }
     
-    public void setOnMetadataChanged(Consumer<DiagramMetadata> callback) {
-        this.onMetadataChanged = callback;
+    /**
+     * Publishes an edit made in this panel on {@link MetadataChangeListener#TOPIC},
+     * which is also how it gets saved.
+     */
+    private void notifyMetadataChanged(MetadataChange change) {
+        invalidateLayers();
+        if (markerUnsaved) {
+            // Journaled alone, the edit would be replayed onto a snapshot without the marker
+            // and converted a second time
+            markerUnsaved = false;
+            publishChanges(List.of(MetadataChange.viewCoordinatesMarked(), change));
+        } else {
+            publishChanges(List.of(change));
+        }
     }
-    
-    private void notifyMetadataChanged() {
-        if (onMetadataChanged != null && metadata != null) {
-            onMetadataChanged.accept(metadata);
+
+    private void publishChanges(List<MetadataChange> changes) {
+        if (project == null || project.isDisposed() || diagramPath == null || metadata == null) {
+            return;
+        }
+        publishingChange = true;
+        try {
+            project.getMessageBus().syncPublisher(MetadataChangeListener.TOPIC)
+                    .metadataChanged(diagramPath, metadata, changes);
+        } finally {
+            publishingChange = false;
+        }
+    }
+
+    /**
+     * Brings the panel up to date after typed edits made elsewhere (e.g. by an action) to
+     * the metadata it shows. Only the touched elements are re-indexed and repainted;
+     * edits this panel published itself are already reflected and are ignored.
+     */
+    public void applyChanges(@NotNull DiagramMetadata changed, @NotNull List<MetadataChange> changes) {
+        if (publishingChange) {
+            return;
+        }
+        if (changed != metadata) {
+            setMetadata(changed);
+            return;
+        }
+        if (markerUnsaved) {
+            // The edit is already journaled; the marker only has to be in the journal too
+            markerUnsaved = false;
+            publishChanges(List.of(MetadataChange.viewCoordinatesMarked()));
+        }
+        invalidateLayers();
+        // The index can only be patched if it is current; otherwise it is rebuilt on the next query
+        boolean indexCurrent = !hitIndexStale && indexedMetadata == metadata;
+        boolean repaintAll = false;
+        Rectangle damage = null;
+        for (MetadataChange change : changes) {
+            Rectangle area = null;
+            switch (change.getKind()) {
+                case TABLE_COLORED -> repaintLegend();
+                case CONTAINER_TABLES -> {
+                    // Membership isn't drawn by the overlay
+                }
+                case CONTAINER_ADDED, CONTAINER_RECOLORED, CONTAINER_RENAMED -> {
+                    ContainerInfo container = metadata.getContainer(change.getId());
+                    if (container != null) {
+                        if (indexCurrent) {
+                            containerIndex.add(container);
+                        }
+                        area = container.getBoundsAsRectangle();
+                    }
+                }
+                case NOTE_ADDED, NOTE_RECOLORED, NOTE_EDITED -> {
+                    StickyNoteInfo note = metadata.getNote(change.getId());
+                    if (note != null) {
+                        if (indexCurrent) {
+                            noteIndex.add(note);
+                        }
+                        noteTextLayouts.remove(note);
+                        area = getNoteBounds(note);
+                    }
+                }
+                default -> {
+                    // Moves, removals and reorders: the previous bounds aren't known here
+                    hitIndexStale = true;
+                    repaintAll = true;
+                }
+            }
+            if (area != null) {
+                damage = damage != null ? damage.union(area) : area;
+            }
+        }
+        if (repaintAll) {
+            repaint();
+        } else if (damage != null) {
+            repaintArea(damage);
+        }
+    }
+
+    /**
+     * Repaints the largest area {@link #drawTableColorLegend} can cover.
+     */
+    private void repaintLegend() {
+        repaint(getWidth() - LEGEND_INSET, LEGEND_Y, LEGEND_WIDTH, LEGEND_HEIGHT);
+    }
+
+    private void publishStatus() {
+        if (project != null && !project.isDisposed()) {
+            project.getMessageBus().syncPublisher(DiagramStatusListener.TOPIC).statusChanged();
+        }
+    }
+
+    /**
+     * Sets the transform from model to panel coordinates, normally driven by
+     * {@link OverlayViewportSync} so the overlay scrolls and zooms with the diagram.
+     * The layers are brought up to date on the next paint: shifted when only the offset
+     * changed, re-rendered on zoom.
+     */
+    public void setViewTransform(int offsetX, int offsetY, double scale) {
+        if (offsetX == viewOffsetX && offsetY == viewOffsetY && scale == viewScale) {
+            return;
+        }
+        viewOffsetX = offsetX;
+        viewOffsetY = offsetY;
+        viewScale = scale;
+        repaint();
+    }
+
+    public double getViewScale() {
+        return viewScale;
+    }
+
+    /**
+     * Called by {@link OverlayViewportSync} after each transform update. Metadata written
+     * before the overlay followed the view holds panel coordinates; it is converted through
+     * the current transform once, so every element stays where it is on screen now. The
+     * conversion is journaled like any edit, so replaying or compacting the journal gives
+     * the same positions and the marker. Without a view nothing calls this, and panel
+     * coordinates stay as they are.
+     */
+    void adoptViewCoordinates() {
+        followsView = true;
+        if (metadata == null || metadata.isViewCoordinates()) {
+            return;
         }
+        if (metadata.getContainers().isEmpty() && metadata.getNotes().isEmpty()) {
+            // Nothing to convert; the marker is journaled with the first edit so untouched diagrams get no file
+            metadata.setViewCoordinates(true);
+            markerUnsaved = true;
+            return;
+        }
+        MetadataChange change = MetadataChange.viewCoordinates(viewOffsetX, viewOffsetY, viewScale);
+        change.applyTo(metadata);
+        LOG.info("Converted overlay positions to diagram coordinates: " + diagramPath);
+        hitIndexStale = true;
+        invalidateLayers();
+        noteTextLayouts.clear();
+        repaint();
+        publishChanges(List.of(change));
+    }
+
+    private Point toModel(MouseEvent e) {
+        return new Point(toModelX(e.getX()), toModelY(e.getY()));
+    }
+
+    /**
+     * Converts an x coordinate on this panel to the diagram coordinates elements are stored in.
+     */
+    public int toModelX(int x) {
+        return (int) Math.floor((x - viewOffsetX) / viewScale);
+    }
+
+    /**
+     * Converts a y coordinate on this panel to the diagram coordinates elements are stored in.
+     */
+    public int toModelY(int y) {
+        return (int) Math.floor((y - viewOffsetY) / viewScale);
     }
 
     public void setMetadata(DiagramMetadata metadata) {
         this.metadata = metadata;
+        markerUnsaved = false;
+        // Callers may have edited the metadata in place, so always re-index and re-render
+        hitIndexStale = true;
+        invalidateLayers();
+        noteTextLayouts.clear();
         repaint();
+        publishStatus();
+        if (followsView) {
+            adoptViewCoordinates();
+        }
     }
     
     public DiagramMetadata getMetadata() {
@@ -171,12 +462,12 @@ public class OverlayPanel extends JPanel {
             public void mouseClicked(MouseEvent e) {
                 // Double-click to edit sticky note or rename container
                 if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
-                    StickyNoteInfo note = findNoteAt(e.getPoint());
+                    StickyNoteInfo note = findNoteAt(toModel(e));
                     if (note != null) {
                         showEditNoteDialog(note);
                         return;
                     }
-                    ContainerInfo container = findContainerAt(e.getPoint());
+                    ContainerInfo container = findContainerAt(toModel(e));
                     if (container != null) {
                         showRenameContainerDialog(container);
                         return;
@@ -184,8 +475,8 @@ public class OverlayPanel extends JPanel {
                 }
                 // Single left click on container title bar shows color picker
                 else if (e.getClickCount() == 1 && SwingUtilities.isLeftMouseButton(e)) {
-                    ContainerInfo container = findContainerAt(e.getPoint());
-                    if (container != null && isOnContainerTitleBar(container, e.getPoint())) {
+                    ContainerInfo container = findContainerAt(toModel(e));
+                    if (container != null && isOnContainerTitleBar(container, toModel(e))) {
                         showQuickColorPicker(container, e);
                     }
                 }
@@ -219,9 +510,10 @@ public class OverlayPanel extends JPanel {
             }
             // Deselect
             if (selectedContainer != null || selectedNote != null) {
+                Rectangle oldSelection = getSelectionBounds();
                 selectedContainer = null;
                 selectedNote = null;
-                repaint();
+                repaintArea(oldSelection);
                 e.consume();
                 return;
             }
@@ -231,18 +523,23 @@ public class OverlayPanel extends JPanel {
         if (e.getKeyCode() == KeyEvent.VK_DELETE || e.getKeyCode() == KeyEvent.VK_BACK_SPACE) {
             if (selectedContainer != null && metadata != null) {
                 Rectangle oldBounds = selectedContainer.getBoundsAsRectangle();
-                metadata.removeContainer(selectedContainer.getId());
+                String containerId = selectedContainer.getId();
+                metadata.removeContainer(containerId);
+                containerIndex.remove(selectedContainer);
                 selectedContainer = null;
-                notifyMetadataChanged();
+                notifyMetadataChanged(MetadataChange.containerRemoved(containerId));
                 repaintArea(oldBounds);
                 e.consume();
                 return;
             }
             if (selectedNote != null && metadata != null) {
-                Rectangle oldBounds = new Rectangle(selectedNote.getPositionAsPoint(), selectedNote.getSizeAsDimension());
-                metadata.removeNote(selectedNote.getId());
+                Rectangle oldBounds = getNoteBounds(selectedNote);
+                String noteId = selectedNote.getId();
+                metadata.removeNote(noteId);
+                noteIndex.remove(selectedNote);
+                noteTextLayouts.remove(selectedNote);
                 selectedNote = null;
-                notifyMetadataChanged();
+                notifyMetadataChanged(MetadataChange.noteRemoved(noteId));
                 repaintArea(oldBounds);
                 e.consume();
                 return;
@@ -263,15 +560,16 @@ public class OverlayPanel extends JPanel {
             if (selectedContainer != null) {
                 Rectangle oldBounds = selectedContainer.getBoundsAsRectangle();
                 moveContainer(selectedContainer, dx, dy);
-                notifyMetadataChanged();
+                containerIndex.update(selectedContainer);
+                notifyMetadataChanged(MetadataChange.containerMoved(selectedContainer));
                 repaintArea(oldBounds.union(selectedContainer.getBoundsAsRectangle()));
                 e.consume();
             } else if (selectedNote != null) {
-                Rectangle oldBounds = new Rectangle(selectedNote.getPositionAsPoint(), selectedNote.getSizeAsDimension());
+                Rectangle oldBounds = getNoteBounds(selectedNote);
                 moveNote(selectedNote, dx, dy);
-                notifyMetadataChanged();
-                Rectangle newBounds = new Rectangle(selectedNote.getPositionAsPoint(), selectedNote.getSizeAsDimension());
-                repaintArea(oldBounds.union(newBounds));
+                noteIndex.update(selectedNote);
+                notifyMetadataChanged(MetadataChange.noteMoved(selectedNote));
+                repaintArea(oldBounds.union(getNoteBounds(selectedNote)));
                 e.consume();
             }
         }
@@ -282,44 +580,24 @@ public class OverlayPanel extends JPanel {
      * Inspired by ItemHoverInputMode in yFiles demos.
      */
     private void updateHoverState(MouseEvent e) {
-        Point p = e.getPoint();
+        Point p = toModel(e);
         ContainerInfo newHoveredContainer = findContainerAt(p);
         StickyNoteInfo newHoveredNote = findNoteAt(p);
         
-        boolean needsRepaint = false;
-        Rectangle repaintRect = null;
-        
         // Update container hover
         if (newHoveredContainer != hoveredContainer) {
-            if (hoveredContainer != null) {
-                repaintRect = growRect(hoveredContainer.getBoundsAsRectangle(), HANDLE_SIZE);
-            }
-            if (newHoveredContainer != null) {
-                Rectangle newRect = growRect(newHoveredContainer.getBoundsAsRectangle(), HANDLE_SIZE);
-                repaintRect = repaintRect != null ? repaintRect.union(newRect) : newRect;
-            }
+            repaintAreas(hoveredContainer != null
+                            ? growRect(hoveredContainer.getBoundsAsRectangle(), HANDLE_SIZE) : null,
+                    newHoveredContainer != null
+                            ? growRect(newHoveredContainer.getBoundsAsRectangle(), HANDLE_SIZE) : null);
             hoveredContainer = newHoveredContainer;
-            needsRepaint = true;
         }
         
         // Update note hover
         if (newHoveredNote != hoveredNote) {
-            if (hoveredNote != null) {
-                Rectangle noteRect = new Rectangle(hoveredNote.getPositionAsPoint(), hoveredNote.getSizeAsDimension());
-                Rectangle grown = growRect(noteRect, HANDLE_SIZE);
-                repaintRect = repaintRect != null ? repaintRect.union(grown) : grown;
-            }
-            if (newHoveredNote != null) {
-                Rectangle noteRect = new Rectangle(newHoveredNote.getPositionAsPoint(), newHoveredNote.getSizeAsDimension());
-                Rectangle newRect = growRect(noteRect, HANDLE_SIZE);
-                repaintRect = repaintRect != null ? repaintRect.union(newRect) : newRect;
-            }
+            repaintAreas(hoveredNote != null ? growRect(getNoteBounds(hoveredNote), HANDLE_SIZE) : null,
+                    newHoveredNote != null ? growRect(getNoteBounds(newHoveredNote), HANDLE_SIZE) : null);
             hoveredNote = newHoveredNote;
-            needsRepaint = true;
-        }
-        
-        if (needsRepaint && repaintRect != null) {
-            repaintArea(repaintRect);
         }
     }
     
@@ -328,20 +606,66 @@ public class OverlayPanel extends JPanel {
      */
     private void repaintArea(Rectangle rect) {
         if (rect != null) {
-            // Add padding for borders and shadows
-            repaint(rect.x - 5, rect.y - 5, rect.width + 15, rect.height + 15);
+            // Add padding for borders and shadows, then map the model rect to the panel
+            int x = (int) Math.floor((rect.x - 5) * viewScale) + viewOffsetX;
+            int y = (int) Math.floor((rect.y - 5) * viewScale) + viewOffsetY;
+            repaint(x, y, (int) Math.ceil((rect.width + 15) * viewScale) + 1,
+                    (int) Math.ceil((rect.height + 15) * viewScale) + 1);
         } else {
             repaint();
         }
     }
+
+    /**
+     * Repaints two model areas, either of which may be null, e.g. an element's bounds before
+     * and after a hover or selection change. Each goes through {@link #repaintArea}; the
+     * repaint manager coalesces them into one paint.
+     */
+    private void repaintAreas(Rectangle first, Rectangle second) {
+        if (first != null) {
+            repaintArea(first);
+        }
+        if (second != null) {
+            repaintArea(second);
+        }
+    }
     
     private Rectangle growRect(Rectangle rect, int amount) {
         return new Rectangle(rect.x - amount, rect.y - amount, 
                            rect.width + amount * 2, rect.height + amount * 2);
     }
+
+    private static Rectangle getNoteBounds(StickyNoteInfo note) {
+        return new Rectangle(note.getPositionAsPoint(), note.getSizeAsDimension());
+    }
+
+    /**
+     * Returns the model bounds of the selected note or container, or null if nothing is selected.
+     */
+    private Rectangle getSelectionBounds() {
+        if (selectedNote != null) {
+            return getNoteBounds(selectedNote);
+        }
+        return selectedContainer != null ? selectedContainer.getBoundsAsRectangle() : null;
+    }
+
+    /**
+     * Repaints the previous and the current selection after the selection changed.
+     */
+    private void repaintSelectionChange(Rectangle oldSelection) {
+        repaintAreas(oldSelection, getSelectionBounds());
+    }
+
+    /**
+     * Returns the area covered by a drawing preview, including the size label below it.
+     */
+    private static Rectangle previewDamage(Rectangle preview) {
+        return new Rectangle(preview.x, preview.y,
+                Math.max(preview.width, PREVIEW_LABEL_WIDTH), preview.height + PREVIEW_LABEL_HEIGHT);
+    }
     
     private void handleRightClick(MouseEvent e) {
-        Point p = e.getPoint();
+        Point p = toModel(e);
         
         // Check for sticky note
         StickyNoteInfo note = findNoteAt(p);
@@ -366,13 +690,13 @@ public class OverlayPanel extends JPanel {
         
         JMenuItem createContainer = new JMenuItem("Create Container Here");
         createContainer.addActionListener(ev -> {
-            createContainerAt(e.getPoint());
+            createContainerAt(toModel(e));
         });
         menu.add(createContainer);
         
         JMenuItem createNote = new JMenuItem("Add Sticky Note Here");
         createNote.addActionListener(ev -> {
-            createStickyNoteAt(e.getPoint());
+            createStickyNoteAt(toModel(e));
         });
         menu.add(createNote);
         
@@ -409,9 +733,9 @@ public class OverlayPanel extends JPanel {
         JMenuItem moveToFront = new JMenuItem("Bring to Front");
         moveToFront.addActionListener(ev -> {
             if (metadata != null) {
-                metadata.getContainers().remove(container);
-                metadata.getContainers().add(container);
-                notifyMetadataChanged();
+                metadata.moveContainerToFront(container.getId());
+                hitIndexStale = true;
+                notifyMetadataChanged(MetadataChange.containersReordered(metadata.getContainers()));
                 repaint();
             }
         });
@@ -420,9 +744,9 @@ public class OverlayPanel extends JPanel {
         JMenuItem moveToBack = new JMenuItem("Send to Back");
         moveToBack.addActionListener(ev -> {
             if (metadata != null) {
-                metadata.getContainers().remove(container);
-                metadata.getContainers().add(0, container);
-                notifyMetadataChanged();
+                metadata.moveContainerToBack(container.getId());
+                hitIndexStale = true;
+                notifyMetadataChanged(MetadataChange.containersReordered(metadata.getContainers()));
                 repaint();
             }
         });
@@ -433,9 +757,10 @@ public class OverlayPanel extends JPanel {
         JMenuItem delete = new JMenuItem("Delete Container");
         delete.addActionListener(ev -> {
             if (metadata != null) {
-                metadata.getContainers().remove(container);
+                metadata.removeContainer(container.getId());
+                containerIndex.remove(container);
                 selectedContainer = null;
-                notifyMetadataChanged();
+                notifyMetadataChanged(MetadataChange.containerRemoved(container.getId()));
                 repaint();
             }
         });
@@ -460,9 +785,9 @@ public class OverlayPanel extends JPanel {
         JMenuItem moveToFront = new JMenuItem("Bring to Front");
         moveToFront.addActionListener(ev -> {
             if (metadata != null) {
-                metadata.getNotes().remove(note);
-                metadata.getNotes().add(note);
-                notifyMetadataChanged();
+                metadata.moveNoteToFront(note.getId());
+                hitIndexStale = true;
+                notifyMetadataChanged(MetadataChange.notesReordered(metadata.getNotes()));
                 repaint();
             }
         });
@@ -473,9 +798,11 @@ public class OverlayPanel extends JPanel {
         JMenuItem delete = new JMenuItem("Delete Note");
         delete.addActionListener(ev -> {
             if (metadata != null) {
-                metadata.getNotes().remove(note);
+                metadata.removeNote(note.getId());
+                noteIndex.remove(note);
+                noteTextLayouts.remove(note);
                 selectedNote = null;
-                notifyMetadataChanged();
+                notifyMetadataChanged(MetadataChange.noteRemoved(note.getId()));
                 repaint();
             }
         });
@@ -488,7 +815,7 @@ public class OverlayPanel extends JPanel {
         if (project == null) return;
         QuickColorPickerPopup popup = new QuickColorPickerPopup(project, container, color -> {
             container.setColor(color);
-            notifyMetadataChanged();
+            notifyMetadataChanged(MetadataChange.containerRecolored(container));
             repaint();
         });
         popup.show(this, e.getX(), e.getY());
@@ -499,7 +826,7 @@ public class OverlayPanel extends JPanel {
         RenameContainerDialog dialog = new RenameContainerDialog(project, container);
         if (dialog.showAndGet()) {
             dialog.applyToContainer();
-            notifyMetadataChanged();
+            notifyMetadataChanged(MetadataChange.containerRenamed(container));
             repaint();
         }
     }
@@ -508,11 +835,11 @@ public class OverlayPanel extends JPanel {
         if (project == null) return;
         Color current = container.getAwtColor();
         Color newColor = ColorPickerDialog.showDialog(project, 
-            current != null ? current : new Color(0x45B7D1)
+            current != null ? current : ColorCache.get(DEFAULT_CONTAINER_ARGB)
         );
         if (newColor != null) {
             container.setColor(newColor);
-            notifyMetadataChanged();
+            notifyMetadataChanged(MetadataChange.containerRecolored(container));
             repaint();
         }
     }
@@ -524,7 +851,7 @@ public class OverlayPanel extends JPanel {
         );
         if (newText != null) {
             note.setText(newText);
-            notifyMetadataChanged();
+            notifyMetadataChanged(MetadataChange.noteEdited(note));
             repaint();
         }
     }
@@ -537,7 +864,7 @@ public class OverlayPanel extends JPanel {
         );
         if (newColor != null) {
             note.setColor(newColor);
-            notifyMetadataChanged();
+            notifyMetadataChanged(MetadataChange.noteRecolored(note));
             repaint();
         }
     }
@@ -554,9 +881,10 @@ public class OverlayPanel extends JPanel {
             "Container " + (metadata.getContainers().size() + 1),
             new int[]{p.x - 75, p.y - 50, 150, 100}
         );
-        metadata.getContainers().add(container);
-        notifyMetadataChanged();
-        repaint();
+        metadata.addContainer(container);
+        containerIndex.add(container);
+        notifyMetadataChanged(MetadataChange.containerAdded(container));
+        repaintArea(container.getBoundsAsRectangle());
     }
     
     private void createStickyNoteAt(Point p) {
@@ -566,14 +894,16 @@ public class OverlayPanel extends JPanel {
             new int[]{120, 80},
             "New note"
         );
-        metadata.getNotes().add(note);
-        notifyMetadataChanged();
-        repaint();
+        metadata.addNote(note);
+        noteIndex.add(note);
+        notifyMetadataChanged(MetadataChange.noteAdded(note));
+        repaintArea(getNoteBounds(note));
     }
 
     private void handleMousePressed(MouseEvent e) {
-        Point p = e.getPoint();
+        Point p = toModel(e);
         dragStart = p;
+        Rectangle oldSelection = getSelectionBounds();
         
         // Handle drawing mode
         if (drawingMode != DrawingMode.NONE) {
@@ -592,7 +922,7 @@ public class OverlayPanel extends JPanel {
                 isDragging = true;
             }
             selectedContainer = null;
-            repaint();
+            repaintSelectionChange(oldSelection);
             return;
         }
 
@@ -605,8 +935,8 @@ public class OverlayPanel extends JPanel {
             } else {
                 isDragging = true;
             }
-            repaint();
         }
+        repaintSelectionChange(oldSelection);
     }
 
     @SuppressWarnings("unused") // Parameter kept for API consistency
@@ -618,7 +948,15 @@ public class OverlayPanel extends JPanel {
         
         // Save metadata after drag/resize operations
         if ((isDragging || isResizing) && metadata != null) {
-            notifyMetadataChanged();
+            if (selectedNote != null) {
+                notifyMetadataChanged(isResizing
+                        ? MetadataChange.noteResized(selectedNote)
+                        : MetadataChange.noteMoved(selectedNote));
+            } else if (selectedContainer != null) {
+                notifyMetadataChanged(isResizing
+                        ? MetadataChange.containerResized(selectedContainer)
+                        : MetadataChange.containerMoved(selectedContainer));
+            }
         }
         
         isDragging = false;
@@ -638,30 +976,37 @@ public class OverlayPanel extends JPanel {
         
         if (metadata == null) return;
         
+        MetadataChange change = null;
         if (drawingMode == DrawingMode.CONTAINER) {
             ContainerInfo container = new ContainerInfo(
                 "Container " + (metadata.getContainers().size() + 1),
                 new int[]{drawingPreview.x, drawingPreview.y, drawingPreview.width, drawingPreview.height}
             );
-            metadata.getContainers().add(container);
+            metadata.addContainer(container);
+            containerIndex.add(container);
+            change = MetadataChange.containerAdded(container);
         } else if (drawingMode == DrawingMode.STICKY_NOTE) {
             StickyNoteInfo note = new StickyNoteInfo(
                 new int[]{drawingPreview.x, drawingPreview.y},
                 new int[]{drawingPreview.width, drawingPreview.height},
                 "New note"
             );
-            metadata.getNotes().add(note);
+            metadata.addNote(note);
+            noteIndex.add(note);
+            change = MetadataChange.noteAdded(note);
         }
         
-        notifyMetadataChanged();
+        if (change != null) {
+            notifyMetadataChanged(change);
+        }
+        // Repaints the preview area, which is where the new element is
         setDrawingMode(DrawingMode.NONE);
-        repaint();
     }
 
     private void handleMouseDragged(MouseEvent e) {
         if (dragStart == null) return;
 
-        Point p = e.getPoint();
+        Point p = toModel(e);
         
         // Handle drawing mode
         if (drawingMode != DrawingMode.NONE && drawingStart != null) {
@@ -669,30 +1014,41 @@ public class OverlayPanel extends JPanel {
             int y = Math.min(drawingStart.y, p.y);
             int w = Math.abs(p.x - drawingStart.x);
             int h = Math.abs(p.y - drawingStart.y);
+            Rectangle oldPreview = drawingPreview;
             drawingPreview = new Rectangle(x, y, w, h);
-            repaint();
+            Rectangle damage = previewDamage(drawingPreview);
+            repaintArea(oldPreview != null ? damage.union(previewDamage(oldPreview)) : damage);
             return;
         }
         
         int dx = p.x - dragStart.x;
         int dy = p.y - dragStart.y;
+        Rectangle oldBounds = getSelectionBounds();
 
         if (isResizing) {
             if (selectedNote != null) {
                 resizeNote(selectedNote, dx, dy);
+                noteIndex.update(selectedNote);
             } else if (selectedContainer != null) {
                 resizeContainer(selectedContainer, dx, dy);
+                containerIndex.update(selectedContainer);
             }
         } else if (isDragging) {
             if (selectedNote != null) {
                 moveNote(selectedNote, dx, dy);
+                noteIndex.update(selectedNote);
             } else if (selectedContainer != null) {
                 moveContainer(selectedContainer, dx, dy);
+                containerIndex.update(selectedContainer);
             }
         }
 
         dragStart = p;
-        repaint();
+        // Only the union of the old and new bounds changed; repaintArea pads it for the
+        // shadow, border and resize handles
+        if (oldBounds != null && (isDragging || isResizing)) {
+            repaintArea(oldBounds.union(getSelectionBounds()));
+        }
     }
 
     private void updateCursor(MouseEvent e) {
@@ -702,7 +1058,7 @@ public class OverlayPanel extends JPanel {
             return;
         }
         
-        Point p = e.getPoint();
+        Point p = toModel(e);
 
         StickyNoteInfo note = findNoteAt(p);
         if (note != null) {
@@ -731,55 +1087,83 @@ public class OverlayPanel extends JPanel {
         };
     }
 
+    /**
+     * Returns the top-most container at the point, using the hit-test index.
+     */
     private ContainerInfo findContainerAt(Point p) {
         if (metadata == null) return null;
-        List<ContainerInfo> containers = metadata.getContainers();
-        // Search in reverse order (top-most first)
-        for (int i = containers.size() - 1; i >= 0; i--) {
-            ContainerInfo container = containers.get(i);
-            Rectangle bounds = container.getBoundsAsRectangle();
-            if (bounds.contains(p)) {
-                return container;
-            }
+        long start = PluginMetrics.start();
+        try {
+            ensureHitIndex();
+            return containerIndex.findAt(p.x, p.y, 0);
+        } finally {
+            PluginMetrics.stop(Metric.HIT_TEST, start);
         }
-        return null;
     }
 
+    /**
+     * Returns the top-most sticky note at the point, using the hit-test index.
+     */
     private StickyNoteInfo findNoteAt(Point p) {
         if (metadata == null) return null;
-        List<StickyNoteInfo> notes = metadata.getNotes();
-        // Search in reverse order (top-most first)
-        for (int i = notes.size() - 1; i >= 0; i--) {
-            StickyNoteInfo note = notes.get(i);
-            Rectangle bounds = new Rectangle(
-                    note.getPositionAsPoint(),
-                    note.getSizeAsDimension()
-            );
-            if (bounds.contains(p)) {
-                return note;
-            }
+        long start = PluginMetrics.start();
+        try {
+            ensureHitIndex();
+            return noteIndex.findAt(p.x, p.y, 0);
+        } finally {
+            PluginMetrics.stop(Metric.HIT_TEST, start);
+        }
+    }
+
+    private void ensureHitIndex() {
+        // The size check catches edits made to the metadata behind the panel's back
+        if (hitIndexStale || indexedMetadata != metadata
+                || containerIndex.size() != metadata.getContainers().size()
+                || noteIndex.size() != metadata.getNotes().size()) {
+            containerIndex.rebuild(metadata.getContainers());
+            noteIndex.rebuild(metadata.getNotes());
+            indexedMetadata = metadata;
+            hitIndexStale = false;
+        }
+    }
+
+    private static void readContainerBounds(ContainerInfo container, int[] out) {
+        int[] bounds = container.getBounds();
+        if (bounds == null || bounds.length < 4) {
+            // Same default as ContainerInfo.getBoundsAsRectangle()
+            out[0] = 0; out[1] = 0; out[2] = 300; out[3] = 200;
+            return;
         }
-        return null;
+        System.arraycopy(bounds, 0, out, 0, 4);
+    }
+
+    private static void readNoteBounds(StickyNoteInfo note, int[] out) {
+        // Same defaults as StickyNoteInfo.getPositionAsPoint()/getSizeAsDimension()
+        int[] pos = note.getPosition();
+        int[] size = note.getSize();
+        boolean hasPos = pos != null && pos.length >= 2;
+        boolean hasSize = size != null && size.length >= 2;
+        out[0] = hasPos ? pos[0] : 0;
+        out[1] = hasPos ? pos[1] : 0;
+        out[2] = hasSize ? size[0] : 150;
+        out[3] = hasSize ? size[1] : 100;
     }
 
     private ResizeHandle getResizeHandle(ContainerInfo container, Point p) {
-        Rectangle bounds = container.getBoundsAsRectangle();
-        return getResizeHandleForRect(bounds, p);
+        readContainerBounds(container, boundsScratch);
+        return getResizeHandleForRect(boundsScratch, p);
     }
 
     private ResizeHandle getResizeHandle(StickyNoteInfo note, Point p) {
-        Rectangle bounds = new Rectangle(
-                note.getPositionAsPoint(),
-                note.getSizeAsDimension()
-        );
-        return getResizeHandleForRect(bounds, p);
+        readNoteBounds(note, boundsScratch);
+        return getResizeHandleForRect(boundsScratch, p);
     }
 
-    private ResizeHandle getResizeHandleForRect(Rectangle bounds, Point p) {
-        boolean onLeft = Math.abs(p.x - bounds.x) <= HANDLE_SIZE;
-        boolean onRight = Math.abs(p.x - (bounds.x + bounds.width)) <= HANDLE_SIZE;
-        boolean onTop = Math.abs(p.y - bounds.y) <= HANDLE_SIZE;
-        boolean onBottom = Math.abs(p.y - (bounds.y + bounds.height)) <= HANDLE_SIZE;
+    private ResizeHandle getResizeHandleForRect(int[] bounds, Point p) {
+        boolean onLeft = Math.abs(p.x - bounds[0]) <= HANDLE_SIZE;
+        boolean onRight = Math.abs(p.x - (bounds[0] + bounds[2])) <= HANDLE_SIZE;
+        boolean onTop = Math.abs(p.y - bounds[1]) <= HANDLE_SIZE;
+        boolean onBottom = Math.abs(p.y - (bounds[1] + bounds[3])) <= HANDLE_SIZE;
 
         if (onTop && onLeft) return ResizeHandle.NW;
         if (onTop && onRight) return ResizeHandle.NE;
@@ -849,17 +1233,25 @@ public class OverlayPanel extends JPanel {
 
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
+        long start = PluginMetrics.start();
+        try {
+            super.paintComponent(g);
+            paintOverlay(g);
+        } finally {
+            PluginMetrics.stop(Metric.OVERLAY_PAINT, start);
+        }
+    }
 
+    private void paintOverlay(Graphics g) {
         Graphics2D g2d = (Graphics2D) g.create();
         // Apply cached rendering hints for performance
         g2d.addRenderingHints(RENDERING_HINTS);
+        updatePaintFonts(getFont());
 
         // Debug border (only in debug mode)
         if (DEBUG_MODE) {
-            g2d.setColor(new Color(0, 150, 255, 50));
-            g2d.setStroke(new BasicStroke(1, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
-                    1, new float[]{5, 5}, 0));
+            g2d.setColor(DEBUG_BORDER_COLOR);
+            g2d.setStroke(DEBUG_STROKE);
             g2d.drawRect(0, 0, getWidth() - 1, getHeight() - 1);
         }
 
@@ -874,34 +1266,384 @@ public class OverlayPanel extends JPanel {
         
         if (!hasElements && DEBUG_MODE) {
             // Show ready message only in debug mode
-            g2d.setColor(new Color(100, 100, 100, 100));
-            g2d.setFont(g2d.getFont().deriveFont(11f));
+            g2d.setColor(READY_TEXT_COLOR);
+            g2d.setFont(noteFont);
             g2d.drawString("Colorful Diagrams Ready - Add sticky notes or containers", 10, 30);
         }
 
-        // Draw containers first (they're behind everything)
-        for (ContainerInfo container : metadata.getContainers()) {
-            drawContainer(g2d, container, container.equals(hoveredContainer));
+        // Static content comes from the cached layers; only live elements are drawn per frame.
+        // Live elements are never merged away, but follow the simplified style when zoomed out.
+        // Containers are behind everything, then notes, then the table color legend.
+        validateLayers();
+        Graphics2D view = createViewGraphics(g2d);
+        // Left untouched (the whole panel) when there is no clip
+        clipScratch.setBounds(0, 0, getWidth(), getHeight());
+        Rectangle clip = g2d.getClipBounds(clipScratch);
+        if (containerLayer != null) {
+            UIUtil.drawImage(g2d, containerLayer, 0, 0, null);
         }
-
-        // Draw sticky notes on top
-        for (StickyNoteInfo note : metadata.getNotes()) {
-            drawStickyNote(g2d, note, note.equals(hoveredNote));
+        if (isLive(hoveredContainer) && hoveredContainer != selectedContainer
+                && isVisible(hoveredContainer, clip.x, clip.y, clip.width, clip.height)) {
+            paintContainer(view, hoveredContainer, true);
         }
-        
-        // Draw table color legend (compact display of colored tables)
-        if (!metadata.getTables().isEmpty()) {
-            drawTableColorLegend(g2d);
+        if (isLive(selectedContainer) && isVisible(selectedContainer, clip.x, clip.y, clip.width, clip.height)) {
+            paintContainer(view, selectedContainer, selectedContainer == hoveredContainer);
+        }
+        if (noteLayer != null) {
+            UIUtil.drawImage(g2d, noteLayer, 0, 0, null);
+        }
+        if (isLive(hoveredNote) && hoveredNote != selectedNote
+                && isVisible(hoveredNote, clip.x, clip.y, clip.width, clip.height)) {
+            paintStickyNote(view, hoveredNote, true);
+        }
+        if (isLive(selectedNote) && isVisible(selectedNote, clip.x, clip.y, clip.width, clip.height)) {
+            paintStickyNote(view, selectedNote, selectedNote == hoveredNote);
         }
         
         // Draw drawing preview
         if (drawingPreview != null && drawingMode != DrawingMode.NONE) {
-            drawDrawingPreview(g2d);
+            drawDrawingPreview(view);
         }
 
+        view.dispose();
         g2d.dispose();
     }
     
+    /**
+     * Marks the cached layers for re-rendering; call after any metadata edit.
+     */
+    private void invalidateLayers() {
+        layersValid = false;
+    }
+
+    /**
+     * Drops the cached layers; they are rendered again on the next paint.
+     */
+    private void releaseLayers() {
+        containerLayer = null;
+        noteLayer = null;
+        layersValid = false;
+    }
+
+    private boolean isLive(ContainerInfo container) {
+        return container != null && metadata.getContainer(container.getId()) == container;
+    }
+
+    private boolean isLive(StickyNoteInfo note) {
+        return note != null && metadata.getNote(note.getId()) == note;
+    }
+
+    /**
+     * Brings the cached layers up to date. They are re-rendered if the metadata, the panel
+     * size or the zoom changed since they were drawn, and shifted if the view offset did.
+     * When the set of live elements changed, only the areas of the elements that entered
+     * or left it are rendered again. While dragging, none of these change, so a frame only
+     * blits the layers and draws the dragged element.
+     */
+    private void validateLayers() {
+        if (!layersValid || layerMetadata != metadata
+                || layerWidth != getWidth() || layerHeight != getHeight() || layerScale != viewScale) {
+            renderLayers();
+            return;
+        }
+        if (layerOffsetX != viewOffsetX || layerOffsetY != viewOffsetY) {
+            shiftLayers();
+        }
+        if (!renderLiveChanges()) {
+            renderLayers();
+        }
+    }
+
+    /**
+     * Renders the layer areas of elements that became live or stopped being live since the
+     * layers were drawn: a hovered element leaves its layer, an element no longer hovered
+     * goes back in. Returns false if an area holds aggregated elements, in which case the
+     * layers have to be rendered in full.
+     */
+    private boolean renderLiveChanges() {
+        boolean complete = true;
+        if (layerSelectedContainer != selectedContainer) {
+            complete = renderArea(layerSelectedContainer) && renderArea(selectedContainer);
+        }
+        if (complete && layerHoveredContainer != hoveredContainer) {
+            complete = renderArea(layerHoveredContainer) && renderArea(hoveredContainer);
+        }
+        if (complete && layerSelectedNote != selectedNote) {
+            complete = renderArea(layerSelectedNote) && renderArea(selectedNote);
+        }
+        if (complete && layerHoveredNote != hoveredNote) {
+            complete = renderArea(layerHoveredNote) && renderArea(hoveredNote);
+        }
+        layerSelectedContainer = selectedContainer;
+        layerHoveredContainer = hoveredContainer;
+        layerSelectedNote = selectedNote;
+        layerHoveredNote = hoveredNote;
+        return complete;
+    }
+
+    private boolean renderArea(ContainerInfo container) {
+        if (container == null || containerLayer == null) {
+            return true;
+        }
+        readContainerBounds(container, paintBounds);
+        return renderArea(containerLayer, false, paintBounds);
+    }
+
+    private boolean renderArea(StickyNoteInfo note) {
+        if (note == null || noteLayer == null) {
+            return true;
+        }
+        readNoteBounds(note, paintBounds);
+        return renderArea(noteLayer, true, paintBounds);
+    }
+
+    /**
+     * Renders the part of a layer covered by model bounds, grown by the cull margin so
+     * everything an element draws around its bounds is included.
+     */
+    private boolean renderArea(BufferedImage layer, boolean notes, int[] bounds) {
+        int left = Math.max(0, (int) Math.floor((bounds[0] - CULL_MARGIN) * viewScale) + viewOffsetX);
+        int top = Math.max(0, (int) Math.floor((bounds[1] - CULL_MARGIN) * viewScale) + viewOffsetY);
+        int right = Math.min(layerWidth,
+                (int) Math.ceil((bounds[0] + bounds[2] + CULL_MARGIN) * viewScale) + viewOffsetX + 1);
+        int bottom = Math.min(layerHeight,
+                (int) Math.ceil((bounds[1] + bounds[3] + CULL_MARGIN) * viewScale) + viewOffsetY + 1);
+        if (right <= left || bottom <= top) {
+            return true;
+        }
+        return renderLayer(layer, notes, left, top, right - left, bottom - top);
+    }
+
+    private void renderLayers() {
+        int width = getWidth();
+        int height = getHeight();
+        layersValid = true;
+        layerWidth = width;
+        layerHeight = height;
+        layerMetadata = metadata;
+        layerSelectedContainer = selectedContainer;
+        layerHoveredContainer = hoveredContainer;
+        layerSelectedNote = selectedNote;
+        layerHoveredNote = hoveredNote;
+        layerOffsetX = viewOffsetX;
+        layerOffsetY = viewOffsetY;
+        layerScale = viewScale;
+        layerAggregated = false;
+        updatePaintFonts(getFont());
+
+        boolean hasContainers = !metadata.getContainers().isEmpty();
+        boolean hasNotes = !metadata.getNotes().isEmpty() || !metadata.getTables().isEmpty();
+        containerLayer = hasContainers ? prepareLayer(containerLayer, width, height) : null;
+        noteLayer = hasNotes ? prepareLayer(noteLayer, width, height) : null;
+
+        detail = OverlayDetail.fromRegistry();
+        if (containerLayer != null) {
+            renderLayer(containerLayer, false, 0, 0, width, height);
+        }
+        if (noteLayer != null) {
+            renderLayer(noteLayer, true, 0, 0, width, height);
+        }
+    }
+
+    /**
+     * Scrolls the layers' pixels by the change in view offset and renders only the strips
+     * that scrolled into view. Falls back to a full render if the layers hold aggregates,
+     * whose grid is fixed to the panel, or the offset moved by more than the panel.
+     */
+    private void shiftLayers() {
+        int dx = viewOffsetX - layerOffsetX;
+        int dy = viewOffsetY - layerOffsetY;
+        if (layerAggregated || Math.abs(dx) >= layerWidth || Math.abs(dy) >= layerHeight) {
+            renderLayers();
+            return;
+        }
+        layerOffsetX = viewOffsetX;
+        layerOffsetY = viewOffsetY;
+        if (!shiftLayer(containerLayer, false, dx, dy) || !shiftLayer(noteLayer, true, dx, dy)) {
+            renderLayers();
+        }
+    }
+
+    private boolean shiftLayer(BufferedImage layer, boolean notes, int dx, int dy) {
+        if (layer == null) {
+            return true;
+        }
+        Graphics2D g = layer.createGraphics();
+        // Replace, not blend: the pixels are translucent
+        g.setComposite(AlphaComposite.Src);
+        g.copyArea(0, 0, layerWidth, layerHeight, dx, dy);
+        g.dispose();
+        // One pixel wider than the exposed strips, for rounding on fractionally scaled screens
+        if (dx != 0 && !renderLayer(layer, notes, dx > 0 ? 0 : layerWidth + dx - 1, 0,
+                Math.abs(dx) + 1, layerHeight)) {
+            return false;
+        }
+        if (dy != 0 && !renderLayer(layer, notes, 0, dy > 0 ? 0 : layerHeight + dy - 1,
+                layerWidth, Math.abs(dy) + 1)) {
+            return false;
+        }
+        if (notes && !metadata.getTables().isEmpty()) {
+            // The legend stays put on screen: clean up where it was moved to, then redraw it.
+            // Padded for its antialiased outline
+            int legendX = layerWidth - LEGEND_INSET - 2;
+            int width = LEGEND_WIDTH + 4;
+            int height = LEGEND_HEIGHT + 4;
+            return renderLayer(layer, true, legendX + dx, LEGEND_Y - 2 + dy, width, height)
+                    && renderLayer(layer, true, legendX, LEGEND_Y - 2, width, height);
+        }
+        return true;
+    }
+
+    /**
+     * Clears an area of a layer and draws the containers or the notes and the legend into it,
+     * leaving out the live elements. Only elements intersecting the area are drawn, so the
+     * cost follows what is on screen. Elements too small to see are merged into the aggregate
+     * grid instead, which is only possible when rendering the whole layer; otherwise this
+     * returns false.
+     */
+    private boolean renderLayer(BufferedImage layer, boolean notes, int x, int y, int width, int height) {
+        boolean whole = x == 0 && y == 0 && width == layerWidth && height == layerHeight;
+        Graphics2D lg = createLayerGraphics(layer);
+        lg.setComposite(AlphaComposite.Clear);
+        lg.fillRect(x, y, width, height);
+        lg.setComposite(AlphaComposite.SrcOver);
+        lg.clipRect(x, y, width, height);
+        Graphics2D view = createViewGraphics(lg);
+        if (whole) {
+            aggregate.reset(layerWidth, layerHeight, detail.getAggregatePixels());
+        }
+        boolean complete = true;
+        if (notes) {
+            for (StickyNoteInfo note : metadata.getNotes()) {
+                if (note == selectedNote || note == hoveredNote
+                        || !isVisible(note, x, y, width, height)) {
+                    continue;
+                }
+                // isVisible left the bounds in boundsScratch
+                if (detail.isAggregated(boundsScratch[2], boundsScratch[3], viewScale)) {
+                    if (!whole) {
+                        complete = false;
+                        break;
+                    }
+                    aggregateElement(note.getArgb());
+                    layerAggregated = true;
+                } else {
+                    paintStickyNote(view, note, false);
+                }
+            }
+        } else {
+            for (ContainerInfo container : metadata.getContainers()) {
+                if (container == selectedContainer || container == hoveredContainer
+                        || !isVisible(container, x, y, width, height)) {
+                    continue;
+                }
+                if (detail.isAggregated(boundsScratch[2], boundsScratch[3], viewScale)) {
+                    if (!whole) {
+                        complete = false;
+                        break;
+                    }
+                    aggregateElement(ColorCache.withAlpha(containerArgb(container), AGGREGATE_CONTAINER_ALPHA));
+                    layerAggregated = true;
+                } else {
+                    paintContainer(view, container, false);
+                }
+            }
+        }
+        view.dispose();
+        if (complete) {
+            if (whole) {
+                aggregate.paint(lg);
+            }
+            // Draw table color legend (compact display of colored tables), fixed on screen
+            if (notes && !metadata.getTables().isEmpty()) {
+                drawTableColorLegend(lg);
+            }
+        }
+        lg.dispose();
+        return complete;
+    }
+
+    /**
+     * Returns a layer of the given size, reusing the previous one if it still fits.
+     * The caller clears what it draws into.
+     */
+    private BufferedImage prepareLayer(BufferedImage layer, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        if (layer == null || layer.getWidth(null) != width || layer.getHeight(null) != height) {
+            // HiDPI-aware, so the layer stays sharp on scaled screens
+            return UIUtil.createImage(this, width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        return layer;
+    }
+
+    private void aggregateElement(int argb) {
+        double centerX = (boundsScratch[0] + boundsScratch[2] / 2.0) * viewScale + viewOffsetX;
+        double centerY = (boundsScratch[1] + boundsScratch[3] / 2.0) * viewScale + viewOffsetY;
+        aggregate.add(centerX, centerY, argb);
+    }
+
+    /**
+     * Returns a copy of the graphics with the view transform applied, for drawing in
+     * model coordinates.
+     */
+    private Graphics2D createViewGraphics(Graphics2D g) {
+        Graphics2D view = (Graphics2D) g.create();
+        view.translate(viewOffsetX, viewOffsetY);
+        view.scale(viewScale, viewScale);
+        return view;
+    }
+
+    private boolean isVisible(ContainerInfo container, int x, int y, int width, int height) {
+        readContainerBounds(container, boundsScratch);
+        return intersectsView(boundsScratch, x, y, width, height);
+    }
+
+    private boolean isVisible(StickyNoteInfo note, int x, int y, int width, int height) {
+        readNoteBounds(note, boundsScratch);
+        return intersectsView(boundsScratch, x, y, width, height);
+    }
+
+    /**
+     * Checks whether model bounds, grown by the cull margin, intersect a panel-space rect.
+     */
+    private boolean intersectsView(int[] bounds, int x, int y, int width, int height) {
+        double left = (bounds[0] - CULL_MARGIN) * viewScale + viewOffsetX;
+        double top = (bounds[1] - CULL_MARGIN) * viewScale + viewOffsetY;
+        double right = (bounds[0] + bounds[2] + CULL_MARGIN) * viewScale + viewOffsetX;
+        double bottom = (bounds[1] + bounds[3] + CULL_MARGIN) * viewScale + viewOffsetY;
+        return right >= x && left <= x + width && bottom >= y && top <= y + height;
+    }
+
+    private Graphics2D createLayerGraphics(BufferedImage layer) {
+        Graphics2D g = layer.createGraphics();
+        g.addRenderingHints(RENDERING_HINTS);
+        g.setFont(getFont());
+        return g;
+    }
+
+    /**
+     * Derives the paint fonts from the panel font, only when that font changed
+     * (e.g. after a Look and Feel or scale change).
+     */
+    private void updatePaintFonts(Font base) {
+        if (base == null || base == paintFontBase) {
+            return;
+        }
+        paintFontBase = base;
+        titleFont = base.deriveFont(Font.BOLD, 11f);
+        noteFont = base.deriveFont(Font.PLAIN, 11f);
+        previewFont = base.deriveFont(Font.PLAIN, 10f);
+        legendTitleFont = base.deriveFont(Font.BOLD, 10f);
+        legendFont = base.deriveFont(Font.PLAIN, 9f);
+    }
+
+    private static BasicStroke createDashedStroke(float width, float dash, float gap) {
+        return new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
+                1, new float[]{dash, gap}, 0);
+    }
+    
     /**
      * Draws a compact legend showing which tables have custom colors.
      * This provides visual feedback since we can't modify diagram node colors directly.
@@ -910,8 +1652,8 @@ public class OverlayPanel extends JPanel {
         Map<String, TableColorInfo> tables = metadata.getTables();
         if (tables.isEmpty()) return;
         
-        int legendX = getWidth() - 200;
-        int legendY = 10;
+        int legendX = getWidth() - LEGEND_INSET;
+        int legendY = LEGEND_Y;
         int itemHeight = 16;
         int padding = 5;
         
@@ -920,20 +1662,20 @@ public class OverlayPanel extends JPanel {
         int legendHeight = padding * 2 + Math.min(tables.size(), 8) * itemHeight + 18;
         
         // Draw legend background
-        g2d.setColor(new Color(40, 40, 40, 200));
+        g2d.setColor(LEGEND_BACKGROUND);
         g2d.fillRoundRect(legendX, legendY, legendWidth, legendHeight, 6, 6);
         
         // Draw legend border
-        g2d.setColor(new Color(80, 80, 80));
+        g2d.setColor(LEGEND_BORDER);
         g2d.drawRoundRect(legendX, legendY, legendWidth, legendHeight, 6, 6);
         
         // Draw title
         g2d.setColor(Color.WHITE);
-        g2d.setFont(g2d.getFont().deriveFont(Font.BOLD, 10f));
+        g2d.setFont(legendTitleFont);
         g2d.drawString("Table Colors", legendX + padding, legendY + 14);
         
         // Draw color items
-        g2d.setFont(g2d.getFont().deriveFont(Font.PLAIN, 9f));
+        g2d.setFont(legendFont);
         int y = legendY + 22;
         int count = 0;
         for (Map.Entry<String, TableColorInfo> entry : tables.entrySet()) {
@@ -946,13 +1688,13 @@ public class OverlayPanel extends JPanel {
             
             String tableId = entry.getKey();
             TableColorInfo colorInfo = entry.getValue();
-            Color color = colorInfo.getAwtColor();
+            int argb = colorInfo.getArgb();
             
-            if (color != null) {
+            if (argb != ColorCache.NONE) {
                 // Draw color swatch
-                g2d.setColor(color);
+                g2d.setColor(ColorCache.get(argb));
                 g2d.fillRoundRect(legendX + padding, y, 12, 12, 2, 2);
-                g2d.setColor(color.darker());
+                g2d.setColor(ColorCache.get(ColorCache.darker(argb)));
                 g2d.drawRoundRect(legendX + padding, y, 12, 12, 2, 2);
                 
                 // Draw table name (truncated)
@@ -967,168 +1709,181 @@ public class OverlayPanel extends JPanel {
     }
     
     private void drawDrawingPreview(Graphics2D g2d) {
-        Color previewColor = drawingMode == DrawingMode.CONTAINER 
-            ? new Color(0x45B7D1)
-            : new Color(0xFFEB3B);
+        int previewArgb = drawingMode == DrawingMode.CONTAINER
+            ? DEFAULT_CONTAINER_ARGB
+            : PREVIEW_NOTE_ARGB;
+        Color previewColor = ColorCache.get(previewArgb);
         
         // Draw semi-transparent fill
-        g2d.setColor(new Color(
-            previewColor.getRed(), previewColor.getGreen(), previewColor.getBlue(), 50
-        ));
+        g2d.setColor(ColorCache.get(ColorCache.withAlpha(previewArgb, 50)));
         g2d.fillRect(drawingPreview.x, drawingPreview.y, 
                      drawingPreview.width, drawingPreview.height);
         
         // Draw dashed border
         g2d.setColor(previewColor);
-        g2d.setStroke(new BasicStroke(2, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
-                1, new float[]{8, 4}, 0));
+        g2d.setStroke(PREVIEW_STROKE);
         g2d.drawRect(drawingPreview.x, drawingPreview.y, 
                      drawingPreview.width, drawingPreview.height);
         
         // Draw size indicator
-        g2d.setFont(g2d.getFont().deriveFont(10f));
+        g2d.setFont(previewFont);
         String sizeText = drawingPreview.width + " x " + drawingPreview.height;
         g2d.drawString(sizeText, drawingPreview.x + 5, drawingPreview.y + drawingPreview.height + 15);
     }
 
-    private void drawContainer(Graphics2D g2d, ContainerInfo container, boolean isHovered) {
-        Rectangle bounds = container.getBoundsAsRectangle();
-        Color color = container.getAwtColor();
-        if (color == null) {
-            color = new Color(0x45B7D1);
+    private void paintContainer(Graphics2D g2d, ContainerInfo container, boolean isHovered) {
+        if (detail.isSimplified(viewScale)) {
+            drawContainerSimplified(g2d, container, isHovered);
+        } else {
+            drawContainer(g2d, container, isHovered);
+        }
+    }
+
+    private void paintStickyNote(Graphics2D g2d, StickyNoteInfo note, boolean isHovered) {
+        if (detail.isSimplified(viewScale)) {
+            drawStickyNoteSimplified(g2d, note, isHovered);
+        } else {
+            drawStickyNote(g2d, note, isHovered);
         }
+    }
 
-        // Draw background with transparency
+    private static int containerArgb(ContainerInfo container) {
+        int argb = container.getArgb();
+        return argb != ColorCache.NONE ? argb : DEFAULT_CONTAINER_ARGB;
+    }
+
+    /**
+     * Zoomed-out container: translucent fill and a solid outline, no title or dashes.
+     */
+    private void drawContainerSimplified(Graphics2D g2d, ContainerInfo container, boolean isHovered) {
+        readContainerBounds(container, paintBounds);
+        int argb = containerArgb(container);
         float alpha = isHovered ? CONTAINER_ALPHA * 1.5f : CONTAINER_ALPHA;
-        Color bgColor = new Color(
-                color.getRed(), color.getGreen(), color.getBlue(),
-                (int) (255 * Math.min(1.0f, alpha))
-        );
-        g2d.setColor(bgColor);
-        g2d.fill(new RoundRectangle2D.Float(
-                bounds.x, bounds.y, bounds.width, bounds.height,
-                CONTAINER_ARC, CONTAINER_ARC
-        ));
+        g2d.setColor(ColorCache.get(ColorCache.withAlpha(argb, (int) (255 * Math.min(1.0f, alpha)))));
+        g2d.fillRect(paintBounds[0], paintBounds[1], paintBounds[2], paintBounds[3]);
+        boolean isSelected = container == selectedContainer;
+        g2d.setColor(ColorCache.get(isSelected ? ColorCache.darker(argb) : argb));
+        g2d.setStroke(SIMPLIFIED_STROKE);
+        g2d.drawRect(paintBounds[0], paintBounds[1], paintBounds[2], paintBounds[3]);
+    }
 
+    /**
+     * Zoomed-out note: a filled rectangle, no shadow, fold or text.
+     */
+    private void drawStickyNoteSimplified(Graphics2D g2d, StickyNoteInfo note, boolean isHovered) {
+        readNoteBounds(note, paintBounds);
+        int argb = note.getArgb();
+        g2d.setColor(ColorCache.get(ColorCache.withAlpha(argb, (int) (255 * NOTE_ALPHA))));
+        g2d.fillRect(paintBounds[0], paintBounds[1], paintBounds[2], paintBounds[3]);
+        if (isHovered || note == selectedNote) {
+            g2d.setColor(ColorCache.get(ColorCache.darker(argb)));
+            g2d.setStroke(SIMPLIFIED_STROKE);
+            g2d.drawRect(paintBounds[0], paintBounds[1], paintBounds[2], paintBounds[3]);
+        }
+    }
+
+    private void drawContainer(Graphics2D g2d, ContainerInfo container, boolean isHovered) {
+        readContainerBounds(container, paintBounds);
+        int x = paintBounds[0];
+        int y = paintBounds[1];
+        int width = paintBounds[2];
+        int height = paintBounds[3];
+        int argb = containerArgb(container);
+        Color color = ColorCache.get(argb);
+        roundRect.setRoundRect(x, y, width, height, CONTAINER_ARC, CONTAINER_ARC);
+        // Draw background with transparency
+        float alpha = isHovered ? CONTAINER_ALPHA * 1.5f : CONTAINER_ALPHA;
+        g2d.setColor(ColorCache.get(ColorCache.withAlpha(argb, (int) (255 * Math.min(1.0f, alpha)))));
+        g2d.fill(roundRect);
         // Draw border - highlighted when selected or hovered
         boolean isSelected = container.equals(selectedContainer);
-        Color borderColor = isSelected ? color.darker() : (isHovered ? color.brighter() : color);
-        float strokeWidth = isSelected ? 2.5f : (isHovered ? 1.5f : 1f);
-        g2d.setColor(borderColor);
-        g2d.setStroke(new BasicStroke(strokeWidth,
-                BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND,
-                1, new float[]{5, 3}, 0));
-        g2d.draw(new RoundRectangle2D.Float(
-                bounds.x, bounds.y, bounds.width, bounds.height,
-                CONTAINER_ARC, CONTAINER_ARC
-        ));
-
+        int borderArgb = isSelected ? ColorCache.darker(argb) : (isHovered ? ColorCache.brighter(argb) : argb);
+        g2d.setColor(ColorCache.get(borderArgb));
+        g2d.setStroke(isSelected ? CONTAINER_STROKE_SELECTED : (isHovered ? CONTAINER_STROKE_HOVERED : CONTAINER_STROKE));
+        g2d.draw(roundRect);
         // Draw title bar
         String title = container.getTitle() != null ? container.getTitle() : "Container";
         g2d.setColor(color);
-        int titleWidth = Math.min(bounds.width, g2d.getFontMetrics().stringWidth(title) + 20);
-        g2d.fillRoundRect(bounds.x, bounds.y, titleWidth, 20, 5, 5);
-
+        g2d.setFont(titleFont);
+        int titleWidth = Math.min(width, g2d.getFontMetrics().stringWidth(title) + 20);
+        g2d.fillRoundRect(x, y, titleWidth, 20, 5, 5);
         // Draw title text
         g2d.setColor(DiagramColorApplicator.getContrastingTextColor(color));
-        g2d.setFont(g2d.getFont().deriveFont(Font.BOLD, 11f));
-        g2d.drawString(title, bounds.x + 5, bounds.y + 14);
+        g2d.drawString(title, x + 5, y + 14);
         
         // Draw resize handles when selected or hovered
         if (isSelected || isHovered) {
-            drawResizeHandles(g2d, bounds, color);
+            drawResizeHandles(g2d, x, y, width, height, argb);
         }
     }
     
-    private void drawResizeHandles(Graphics2D g2d, Rectangle bounds, Color accentColor) {
+    private void drawResizeHandles(Graphics2D g2d, int x, int y, int width, int height, int accentArgb) {
         int handleSize = 6;
-        g2d.setColor(accentColor.darker());
-        g2d.setStroke(new BasicStroke(1));
+        Color handleColor = ColorCache.get(ColorCache.darker(accentArgb));
+        g2d.setStroke(HANDLE_STROKE);
         
-        // Corner handles
-        int[][] corners = {
-            {bounds.x - handleSize/2, bounds.y - handleSize/2}, // NW
-            {bounds.x + bounds.width - handleSize/2, bounds.y - handleSize/2}, // NE
-            {bounds.x - handleSize/2, bounds.y + bounds.height - handleSize/2}, // SW
-            {bounds.x + bounds.width - handleSize/2, bounds.y + bounds.height - handleSize/2} // SE
-        };
-        
-        for (int[] corner : corners) {
+        // Corner handles: NW, NE, SW, SE
+        for (int corner = 0; corner < 4; corner++) {
+            int hx = ((corner & 1) == 0 ? x : x + width) - handleSize / 2;
+            int hy = ((corner & 2) == 0 ? y : y + height) - handleSize / 2;
             g2d.setColor(Color.WHITE);
-            g2d.fillRect(corner[0], corner[1], handleSize, handleSize);
-            g2d.setColor(accentColor.darker());
-            g2d.drawRect(corner[0], corner[1], handleSize, handleSize);
+            g2d.fillRect(hx, hy, handleSize, handleSize);
+            g2d.setColor(handleColor);
+            g2d.drawRect(hx, hy, handleSize, handleSize);
         }
     }
-
     private void drawStickyNote(Graphics2D g2d, StickyNoteInfo note, boolean isHovered) {
-        Point pos = note.getPositionAsPoint();
-        Dimension size = note.getSizeAsDimension();
-        Color color = note.getAwtColor();
-        
-        if (color == null) {
-            color = new Color(0xFFEB3B); // Default yellow
-        }
+        readNoteBounds(note, paintBounds);
+        int x = paintBounds[0];
+        int y = paintBounds[1];
+        int width = paintBounds[2];
+        int height = paintBounds[3];
+        int argb = note.getArgb();
+        Color color = ColorCache.get(argb);
+        int darkerArgb = ColorCache.darker(argb);
 
         // Draw shadow (larger when hovered - lift effect)
         int shadowOffset = isHovered ? 5 : 3;
-        g2d.setColor(new Color(0, 0, 0, isHovered ? 50 : 30));
-        g2d.fillRoundRect(pos.x + shadowOffset, pos.y + shadowOffset, size.width, size.height, NOTE_ARC, NOTE_ARC);
+        g2d.setColor(isHovered ? NOTE_SHADOW_HOVERED : NOTE_SHADOW);
+        g2d.fillRoundRect(x + shadowOffset, y + shadowOffset, width, height, NOTE_ARC, NOTE_ARC);
 
         // Draw background
-        Color bgColor = new Color(
-                color.getRed(), color.getGreen(), color.getBlue(),
-                (int) (255 * NOTE_ALPHA)
-        );
-        g2d.setColor(bgColor);
-        g2d.fillRoundRect(pos.x, pos.y, size.width, size.height, NOTE_ARC, NOTE_ARC);
+        g2d.setColor(ColorCache.get(ColorCache.withAlpha(argb, (int) (255 * NOTE_ALPHA))));
+        g2d.fillRoundRect(x, y, width, height, NOTE_ARC, NOTE_ARC);
 
         // Draw border - highlighted when selected or hovered
         boolean isSelected = note.equals(selectedNote);
-        Color borderColor = isSelected ? color.darker().darker() : (isHovered ? color.darker() : color.darker());
-        float strokeWidth = isSelected ? 2.5f : (isHovered ? 1.5f : 1f);
-        g2d.setColor(borderColor);
-        g2d.setStroke(new BasicStroke(strokeWidth));
-        g2d.drawRoundRect(pos.x, pos.y, size.width, size.height, NOTE_ARC, NOTE_ARC);
+        int borderArgb = isSelected ? ColorCache.darker(darkerArgb) : darkerArgb;
+        g2d.setColor(ColorCache.get(borderArgb));
+        g2d.setStroke(isSelected ? NOTE_STROKE_SELECTED : (isHovered ? NOTE_STROKE_HOVERED : NOTE_STROKE));
+        g2d.drawRoundRect(x, y, width, height, NOTE_ARC, NOTE_ARC);
 
         // Draw fold corner
         int foldSize = 12;
-        g2d.setColor(color.darker());
-        g2d.fillPolygon(
-                new int[]{pos.x + size.width - foldSize, pos.x + size.width, pos.x + size.width},
-                new int[]{pos.y + size.height, pos.y + size.height - foldSize, pos.y + size.height},
-                3
-        );
+        g2d.setColor(ColorCache.get(darkerArgb));
+        foldXs[0] = x + width - foldSize;
+        foldXs[1] = x + width;
+        foldXs[2] = x + width;
+        foldYs[0] = y + height;
+        foldYs[1] = y + height - foldSize;
+        foldYs[2] = y + height;
+        g2d.fillPolygon(foldXs, foldYs, 3);
 
         // Draw text
         if (note.getText() != null && !note.getText().isEmpty()) {
             g2d.setColor(DiagramColorApplicator.getContrastingTextColor(color));
-            g2d.setFont(g2d.getFont().deriveFont(11f));
+            g2d.setFont(noteFont);
 
-            // Word wrap text
+            // Word wrap text, reusing the cached layout unless the text, size or font changed
             FontMetrics fm = g2d.getFontMetrics();
-            int lineHeight = fm.getHeight();
-            int textX = pos.x + 5;
-            int textY = pos.y + lineHeight;
-            int maxWidth = size.width - 10;
-            int maxHeight = size.height - 10;
-
-            String[] words = note.getText().split(" ");
-            StringBuilder line = new StringBuilder();
-            for (String word : words) {
-                String testLine = line.length() > 0 ? line + " " + word : word;
-                if (fm.stringWidth(testLine) > maxWidth) {
-                    if (textY + lineHeight > pos.y + maxHeight) break;
-                    g2d.drawString(line.toString(), textX, textY);
-                    textY += lineHeight;
-                    line = new StringBuilder(word);
-                } else {
-                    line = new StringBuilder(testLine);
-                }
-            }
-            if (line.length() > 0 && textY <= pos.y + maxHeight) {
-                g2d.drawString(line.toString(), textX, textY);
+            int maxWidth = width - 10;
+            int maxHeight = height - 10;
+            NoteTextLayout layout = noteTextLayouts.get(note);
+            if (layout == null || !layout.isValidFor(note.getText(), fm, maxWidth, maxHeight)) {
+                layout = NoteTextLayout.create(note.getText(), fm, maxWidth, maxHeight);
+                noteTextLayouts.put(note, layout);
             }
+            layout.draw(g2d, x + 5, y);
         }
     }
 
@@ -1147,30 +1902,16 @@ public class OverlayPanel extends JPanel {
             return false;
         }
         
-        Point p = new Point(x, y);
-        
-        // Check notes first (on top)
-        for (StickyNoteInfo note : metadata.getNotes()) {
-            Rectangle bounds = new Rectangle(
-                    note.getPositionAsPoint(),
-                    note.getSizeAsDimension()
-            );
-            // Expand bounds slightly for easier interaction
-            bounds.grow(HANDLE_SIZE, HANDLE_SIZE);
-            if (bounds.contains(p)) {
-                return true;
-            }
+        // Expand bounds slightly for easier interaction
+        long start = PluginMetrics.start();
+        try {
+            ensureHitIndex();
+            int modelX = toModelX(x);
+            int modelY = toModelY(y);
+            return noteIndex.findAt(modelX, modelY, HANDLE_SIZE) != null
+                    || containerIndex.findAt(modelX, modelY, HANDLE_SIZE) != null;
+        } finally {
+            PluginMetrics.stop(Metric.OVERLAY_CONTAINS, start);
         }
-        
-        // Check containers
-        for (ContainerInfo container : metadata.getContainers()) {
-            Rectangle bounds = container.getBoundsAsRectangle();
-            bounds.grow(HANDLE_SIZE, HANDLE_SIZE);
-            if (bounds.contains(p)) {
-                return true;
-            }
-        }
-        
-        return false;
     }
 }
@@ -0,0 +1,273 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import java.awt.Component;
+import java.awt.Container;
+import java.awt.Point;
+import java.awt.event.AdjustmentListener;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.ComponentListener;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.beans.PropertyChangeListener;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import javax.swing.JComponent;
+import javax.swing.JScrollBar;
+import javax.swing.JViewport;
+import javax.swing.SwingUtilities;
+import javax.swing.event.ChangeListener;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.intellij.openapi.diagnostic.Logger;
+
+/**
+ * Keeps an {@link OverlayPanel}'s view transform in sync with the scroll position and
+ * zoom of the diagram it is attached to.
+ * <p>
+ * The diagram API doesn't expose the canvas, so the view is looked up once in the
+ * editor's component tree. A graph view with {@code getZoom()} and {@code getViewPoint()}
+ * is preferred; the transform is re-read on its property changes, on its scroll bars'
+ * adjustments (which also fire when zooming changes their extent) and when its canvas
+ * moves or resizes. Failing that, the first {@link JViewport} is followed through its
+ * change events, with a zoom of 1. The origin of the canvas or viewport view is converted
+ * into overlay coordinates, since the overlay sits in the glass pane rather than on the canvas.
+ * <p>
+ * With neither, the overlay keeps the identity transform and element positions stay
+ * panel coordinates. Once a view is followed, older metadata in panel coordinates is
+ * converted through {@link OverlayPanel#adoptViewCoordinates()}.
+ * <p>
+ * Listeners are only attached while the overlay is showing, and the sync stops for good
+ * when the overlay is removed from its parent.
+ */
+final class OverlayViewportSync implements HierarchyListener {
+    private static final Logger LOG = Logger.getInstance(OverlayViewportSync.class);
+    private static final int MAX_SEARCH_DEPTH = 12;
+
+    private final OverlayPanel overlay;
+    private final JViewport viewport;
+    private final Component graphView;
+    private final Component canvas;
+    private final Method getZoom;
+    private final Method getViewPoint;
+    private final List<JScrollBar> scrollBars;
+
+    private final ChangeListener viewportListener = e -> sync();
+    private final PropertyChangeListener viewListener = e -> sync();
+    private final AdjustmentListener scrollListener = e -> sync();
+    private final ComponentListener boundsListener = new ComponentAdapter() {
+        @Override
+        public void componentMoved(ComponentEvent e) {
+            sync();
+        }
+
+        @Override
+        public void componentResized(ComponentEvent e) {
+            sync();
+        }
+    };
+    private boolean listening;
+
+    private OverlayViewportSync(OverlayPanel overlay, @Nullable JViewport viewport,
+                                @Nullable Component graphView, @Nullable Method getZoom,
+                                @Nullable Method getViewPoint) {
+        this.overlay = overlay;
+        this.viewport = graphView == null ? viewport : null;
+        this.graphView = graphView;
+        this.getZoom = getZoom;
+        this.getViewPoint = getViewPoint;
+        this.canvas = graphView != null ? findCanvas(graphView) : null;
+        this.scrollBars = graphView != null ? findScrollBars(graphView) : List.of();
+    }
+
+    /**
+     * Starts syncing the overlay with the diagram view inside {@code editorComponent}.
+     */
+    static void install(@NotNull JComponent editorComponent, @NotNull OverlayPanel overlay) {
+        JViewport viewport = null;
+        Deque<Component> queue = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        queue.add(editorComponent);
+        depths.add(0);
+        while (!queue.isEmpty()) {
+            Component component = queue.poll();
+            int depth = depths.poll();
+            if (component == overlay) {
+                continue;
+            }
+            Method getZoom = findGetter(component, "getZoom");
+            Method getViewPoint = getZoom != null ? findGetter(component, "getViewPoint") : null;
+            if (getZoom != null && getViewPoint != null) {
+                LOG.info("Overlay follows graph view: " + component.getClass().getName());
+                new OverlayViewportSync(overlay, null, component, getZoom, getViewPoint).start();
+                return;
+            }
+            if (viewport == null && component instanceof JViewport found) {
+                viewport = found;
+            }
+            if (component instanceof Container container && depth < MAX_SEARCH_DEPTH) {
+                for (Component child : container.getComponents()) {
+                    queue.add(child);
+                    depths.add(depth + 1);
+                }
+            }
+        }
+        if (viewport != null) {
+            LOG.info("Overlay follows viewport of: " + viewport.getView());
+            new OverlayViewportSync(overlay, viewport, null, null, null).start();
+        } else {
+            LOG.info("No scrollable diagram view found; overlay uses panel coordinates");
+        }
+    }
+
+    private void start() {
+        overlay.addHierarchyListener(this);
+        if (overlay.isShowing()) {
+            attach();
+        }
+    }
+
+    private void stop() {
+        overlay.removeHierarchyListener(this);
+        detach();
+    }
+
+    private void attach() {
+        if (listening) {
+            return;
+        }
+        listening = true;
+        overlay.addComponentListener(boundsListener);
+        if (viewport != null) {
+            viewport.addChangeListener(viewportListener);
+        } else {
+            graphView.addPropertyChangeListener(viewListener);
+            canvas.addComponentListener(boundsListener);
+            for (JScrollBar scrollBar : scrollBars) {
+                scrollBar.addAdjustmentListener(scrollListener);
+            }
+        }
+        // Catch up with whatever changed while detached
+        sync();
+    }
+
+    private void detach() {
+        if (!listening) {
+            return;
+        }
+        listening = false;
+        overlay.removeComponentListener(boundsListener);
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+        } else {
+            graphView.removePropertyChangeListener(viewListener);
+            canvas.removeComponentListener(boundsListener);
+            for (JScrollBar scrollBar : scrollBars) {
+                scrollBar.removeAdjustmentListener(scrollListener);
+            }
+        }
+    }
+
+    @Override
+    public void hierarchyChanged(HierarchyEvent e) {
+        if ((e.getChangeFlags() & HierarchyEvent.PARENT_CHANGED) != 0 && overlay.getParent() == null) {
+            stop();
+        } else if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0) {
+            if (overlay.isShowing()) {
+                attach();
+            } else {
+                detach();
+            }
+        }
+    }
+
+    private void sync() {
+        if (!listening) {
+            return;
+        }
+        if (viewport != null) {
+            syncFromViewport();
+        } else {
+            syncFromGraphView();
+        }
+    }
+
+    private void syncFromViewport() {
+        Component view = viewport.getView();
+        if (view == null) {
+            return;
+        }
+        // The view's origin already includes the scroll position
+        Point origin = SwingUtilities.convertPoint(view, 0, 0, overlay);
+        overlay.setViewTransform(origin.x, origin.y, 1.0);
+        overlay.adoptViewCoordinates();
+    }
+
+    private void syncFromGraphView() {
+        if (!graphView.isShowing()) {
+            return;
+        }
+        try {
+            double zoom = ((Number) getZoom.invoke(graphView)).doubleValue();
+            Object viewPoint = getViewPoint.invoke(graphView);
+            if (zoom <= 0 || !(viewPoint instanceof Point point)) {
+                return;
+            }
+            // Graph views map world to canvas as (world - viewPoint) * zoom
+            Point origin = SwingUtilities.convertPoint(canvas, 0, 0, overlay);
+            overlay.setViewTransform(origin.x + (int) Math.round(-point.x * zoom),
+                    origin.y + (int) Math.round(-point.y * zoom), zoom);
+            overlay.adoptViewCoordinates();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Could not read diagram zoom; overlay stops following the view", e);
+            stop();
+        }
+    }
+
+    /**
+     * The component the graph is drawn on, which may be inset from the graph view
+     * (rulers, scroll bars); the graph view itself if it doesn't say.
+     */
+    @NotNull
+    private static Component findCanvas(Component graphView) {
+        Method getCanvas = findGetter(graphView, "getCanvasComponent");
+        if (getCanvas != null) {
+            try {
+                if (getCanvas.invoke(graphView) instanceof Component found) {
+                    return found;
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // Fall back to the graph view
+            }
+        }
+        return graphView;
+    }
+
+    private static List<JScrollBar> findScrollBars(Component graphView) {
+        List<JScrollBar> found = new ArrayList<>(2);
+        if (graphView instanceof Container container) {
+            for (Component child : container.getComponents()) {
+                if (child instanceof JScrollBar scrollBar) {
+                    found.add(scrollBar);
+                }
+            }
+        }
+        return found;
+    }
+
+    @Nullable
+    private static Method findGetter(Component component, String name) {
+        try {
+            Method method = component.getClass().getMethod(name);
+            return method.getParameterCount() == 0 && method.getReturnType() != void.class ? method : null;
+        } catch (NoSuchMethodException | SecurityException e) {
+            return null;
+        }
+    }
+}
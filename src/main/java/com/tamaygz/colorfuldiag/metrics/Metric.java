@@ -0,0 +1,31 @@
+package com.tamaygz.colorfuldiag.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Operations timed by {@link PluginMetrics}, each with its own latency histogram.
+ */
+public enum Metric {
+    OVERLAY_PAINT("Overlay paint"),
+    OVERLAY_CONTAINS("Overlay contains"),
+    HIT_TEST("Hit test"),
+    METADATA_LOAD("Metadata load"),
+    METADATA_SAVE("Metadata save");
+
+    private final String displayName;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    Metric(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @NotNull
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @NotNull
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
@@ -0,0 +1,27 @@
+package com.tamaygz.colorfuldiag.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for one timed plugin operation, so overlay and metadata costs show up
+ * next to the IDE's own events in a flight recording.
+ */
+@Name("com.tamaygz.colorfuldiag.Operation")
+@Label("Colorful Diagrams Operation")
+@Category("Colorful Diagrams")
+@Description("A timed overlay paint, hit test or metadata load/save")
+@StackTrace(false)
+final class OperationEvent extends Event {
+    @Label("Operation")
+    String operation;
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+}
@@ -0,0 +1,94 @@
+package com.tamaygz.colorfuldiag.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.openapi.util.registry.RegistryValue;
+
+/**
+ * Opt-in latency metrics for the plugin's hot paths.
+ * <p>
+ * Callers bracket an operation with {@link #start()} and {@link #stop(Metric, long)}.
+ * The elapsed time goes into the metric's {@link LatencyHistogram} and, while a flight
+ * recording is running, into an {@link OperationEvent}. With the
+ * {@code colorfuldiag.metrics.enabled} registry key off (the default), {@code start}
+ * returns without reading the clock and {@code stop} returns immediately.
+ */
+public final class PluginMetrics {
+    private static final String ENABLED_KEY = "colorfuldiag.metrics.enabled";
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    // Looked up once; RegistryValue caches the parsed value and tracks changes
+    private static volatile RegistryValue enabledValue;
+
+    private PluginMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        try {
+            RegistryValue value = enabledValue;
+            if (value == null) {
+                value = Registry.get(ENABLED_KEY);
+                enabledValue = value;
+            }
+            return value.asBoolean();
+        } catch (Exception e) {
+            // Key missing (e.g. outside the IDE) - metrics stay off
+            return false;
+        }
+    }
+
+    /**
+     * Returns a start stamp to pass to {@link #stop(Metric, long)}.
+     */
+    public static long start() {
+        return isEnabled() ? System.nanoTime() : NOT_TIMED;
+    }
+
+    public static void stop(@NotNull Metric metric, long start) {
+        if (start == NOT_TIMED) {
+            return;
+        }
+        long elapsed = System.nanoTime() - start;
+        metric.getHistogram().record(elapsed);
+        OperationEvent event = new OperationEvent();
+        if (event.isEnabled()) {
+            event.operation = metric.getDisplayName();
+            event.elapsed = elapsed;
+            event.commit();
+        }
+    }
+
+    public static void reset() {
+        for (Metric metric : Metric.values()) {
+            metric.getHistogram().reset();
+        }
+    }
+
+    /**
+     * Formats one line per metric that has samples, e.g.
+     * {@code Overlay paint: 120 calls | p50 0.21 | p95 0.80 | p99 1.20 | max 4.00 ms}.
+     */
+    @NotNull
+    public static String formatSummary(@NotNull String lineSeparator) {
+        StringBuilder summary = new StringBuilder();
+        for (Metric metric : Metric.values()) {
+            LatencyHistogram.Snapshot snapshot = metric.getHistogram().snapshot();
+            if (snapshot.count() == 0) {
+                continue;
+            }
+            if (summary.length() > 0) {
+                summary.append(lineSeparator);
+            }
+            summary.append(String.format("%s: %d calls | p50 %.2f | p95 %.2f | p99 %.2f | max %.2f ms",
+                    metric.getDisplayName(), snapshot.count(),
+                    toMillis(snapshot.p50()), toMillis(snapshot.p95()),
+                    toMillis(snapshot.p99()), toMillis(snapshot.max())));
+        }
+        return summary.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
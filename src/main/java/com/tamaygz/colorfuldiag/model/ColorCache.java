@@ -0,0 +1,134 @@
+package com.tamaygz.colorfuldiag.model;
+
+import java.awt.Color;
+
+/**
+ * Packed ARGB color helpers and a shared flyweight {@link Color} cache.
+ * <p>
+ * The model keeps colors as packed ARGB ints, decoded once when the hex string is set;
+ * the hex string is only the serialized form. Painting resolves ints to {@link Color}
+ * through {@link #get(int)}, which returns a shared instance, so the paint path does not
+ * allocate. Derived shades (darker, translucent) are computed on the int as well.
+ * <p>
+ * The cache is a small direct-mapped table. A collision replaces the slot, so the worst
+ * case is an allocation, never a wrong color. It is safe to use from any thread without
+ * locking since {@link Color} is immutable.
+ */
+public final class ColorCache {
+
+    /**
+     * Marker for "no color". Decoded hex colors are always opaque, so this never clashes.
+     */
+    public static final int NONE = 0;
+
+    private static final int SLOT_BITS = 10;
+    private static final Color[] SLOTS = new Color[1 << SLOT_BITS];
+    private static final double FACTOR = 0.7; // Same as Color.darker()/brighter()
+
+    private ColorCache() {
+    }
+
+    /**
+     * Returns the shared color for a packed ARGB value.
+     */
+    public static Color get(int argb) {
+        int slot = (argb * 0x9E3779B9) >>> (32 - SLOT_BITS);
+        Color color = SLOTS[slot];
+        if (color == null || color.getRGB() != argb) {
+            color = new Color(argb, true);
+            SLOTS[slot] = color;
+        }
+        return color;
+    }
+
+    /**
+     * Decodes a color string the way {@link Color#decode(String)} does, into an opaque
+     * packed ARGB value. Returns {@link #NONE} for null, empty or invalid strings.
+     */
+    public static int parse(String hex) {
+        if (hex == null || hex.isEmpty()) {
+            return NONE;
+        }
+        try {
+            return 0xFF000000 | (Integer.decode(hex) & 0xFFFFFF);
+        } catch (NumberFormatException e) {
+            return NONE;
+        }
+    }
+
+    public static String toHex(int argb) {
+        return String.format("#%06X", argb & 0xFFFFFF);
+    }
+
+    public static int alpha(int argb) {
+        return argb >>> 24;
+    }
+
+    public static int withAlpha(int argb, int alpha) {
+        return (argb & 0xFFFFFF) | (Math.max(0, Math.min(255, alpha)) << 24);
+    }
+
+    /**
+     * Same result as {@link Color#darker()}.
+     */
+    public static int darker(int argb) {
+        return pack(alpha(argb),
+                (int) (red(argb) * FACTOR),
+                (int) (green(argb) * FACTOR),
+                (int) (blue(argb) * FACTOR));
+    }
+
+    /**
+     * Same result as {@link Color#brighter()}.
+     */
+    public static int brighter(int argb) {
+        int r = red(argb);
+        int g = green(argb);
+        int b = blue(argb);
+        int i = (int) (1.0 / (1.0 - FACTOR));
+        if (r == 0 && g == 0 && b == 0) {
+            return pack(alpha(argb), i, i, i);
+        }
+        if (r > 0 && r < i) r = i;
+        if (g > 0 && g < i) g = i;
+        if (b > 0 && b < i) b = i;
+        return pack(alpha(argb),
+                Math.min((int) (r / FACTOR), 255),
+                Math.min((int) (g / FACTOR), 255),
+                Math.min((int) (b / FACTOR), 255));
+    }
+
+    /**
+     * Scales the RGB components down by the given factor (0 keeps the color, 1 gives black).
+     */
+    public static int darken(int argb, float factor) {
+        return pack(alpha(argb),
+                (int) (red(argb) * (1 - factor)),
+                (int) (green(argb) * (1 - factor)),
+                (int) (blue(argb) * (1 - factor)));
+    }
+
+    /**
+     * Returns true if dark text reads better than light text on this color.
+     */
+    public static boolean isLight(int argb) {
+        double luminance = 0.299 * red(argb) + 0.587 * green(argb) + 0.114 * blue(argb);
+        return luminance > 128;
+    }
+
+    private static int red(int argb) {
+        return (argb >> 16) & 0xFF;
+    }
+
+    private static int green(int argb) {
+        return (argb >> 8) & 0xFF;
+    }
+
+    private static int blue(int argb) {
+        return argb & 0xFF;
+    }
+
+    private static int pack(int alpha, int r, int g, int b) {
+        return (alpha << 24) | (Math.max(0, r) << 16) | (Math.max(0, g) << 8) | Math.max(0, b);
+    }
+}
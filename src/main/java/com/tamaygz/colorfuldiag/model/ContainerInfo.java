@@ -3,30 +3,41 @@ package com.tamaygz.colorfuldiag.model;
 import java.awt.Color;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 
 /**
  * Represents a visual container that groups tables in a diagram.
+ * Membership is kept as an ordered list (the serialized form) plus a transient set
+ * for O(1) {@link #containsTable(String)}. The owning {@link DiagramMetadata} is told
+ * about membership and color changes so it can keep its table and color indexes current.
  */
 public class ContainerInfo {
     private String id;
     private String title;
     private String color; // Hex color string
+    private transient int argb; // Decoded color, ColorCache.NONE if unset or invalid
     private int[] bounds; // [x, y, width, height]
     private List<String> tables; // List of table IDs in this container
 
+    private transient List<String> tablesView;
+    private transient Set<String> tableSet;
+    private transient DiagramMetadata owner;
+
     public ContainerInfo() {
         this.id = UUID.randomUUID().toString();
-        this.tables = new ArrayList<>();
+        setTables(null);
         this.bounds = new int[]{0, 0, 300, 200};
     }
 
     public ContainerInfo(String title, String color, int x, int y, int width, int height) {
         this();
         this.title = title;
-        this.color = color;
+        setColor(color);
         this.bounds = new int[]{x, y, width, height};
     }
     
@@ -36,6 +47,20 @@ public class ContainerInfo {
         this.bounds = bounds;
     }
 
+    /**
+     * Copy constructor; takes the id as-is so snapshots never touch UUID's SecureRandom.
+     */
+    private ContainerInfo(ContainerInfo source) {
+        this.id = source.id;
+        this.title = source.title;
+        this.color = source.color;
+        this.argb = source.argb;
+        this.bounds = source.bounds != null ? source.bounds.clone() : null;
+        this.tables = new ArrayList<>(source.tables);
+        this.tablesView = Collections.unmodifiableList(this.tables);
+        this.tableSet = new HashSet<>(source.tableSet);
+    }
+
     public String getId() {
         return id;
     }
@@ -58,10 +83,21 @@ public class ContainerInfo {
 
     public void setColor(String color) {
         this.color = color;
+        this.argb = ColorCache.parse(color);
+        if (owner != null) {
+            owner.containerRecolored(this);
+        }
     }
     
     public void setColor(Color awtColor) {
-        this.color = awtColor != null ? TableColorInfo.colorToHex(awtColor) : null;
+        setColor(awtColor != null ? TableColorInfo.colorToHex(awtColor) : null);
+    }
+
+    /**
+     * Returns the color as packed ARGB, or {@link ColorCache#NONE} if none is set.
+     */
+    public int getArgb() {
+        return argb;
     }
 
     public int[] getBounds() {
@@ -83,42 +119,64 @@ public class ContainerInfo {
         this.bounds = new int[]{rect.x, rect.y, rect.width, rect.height};
     }
 
+    /**
+     * Member table IDs in insertion order; read-only, use the mutators below.
+     */
     public List<String> getTables() {
-        return tables;
+        return tablesView;
     }
 
     public void setTables(List<String> tables) {
         this.tables = tables != null ? tables : new ArrayList<>();
+        this.tablesView = Collections.unmodifiableList(this.tables);
+        this.tableSet = new HashSet<>(this.tables);
+        if (owner != null) {
+            owner.invalidateTableIndex();
+        }
     }
 
     public void addTable(String tableId) {
-        if (tables == null) {
-            tables = new ArrayList<>();
-        }
-        if (!tables.contains(tableId)) {
+        if (tableSet.add(tableId)) {
             tables.add(tableId);
+            if (owner != null) {
+                owner.tableAdded(this, tableId);
+            }
         }
     }
 
     public void removeTable(String tableId) {
-        if (tables != null) {
+        if (tableSet.remove(tableId)) {
             tables.remove(tableId);
+            if (owner != null) {
+                owner.tableRemoved(this, tableId);
+            }
+        }
+    }
+
+    public void clearTables() {
+        if (!tables.isEmpty()) {
+            tables.clear();
+            tableSet.clear();
+            if (owner != null) {
+                owner.invalidateTableIndex();
+            }
         }
     }
 
     public boolean containsTable(String tableId) {
-        return tables != null && tables.contains(tableId);
+        return tableSet.contains(tableId);
+    }
+
+    void setOwner(DiagramMetadata owner) {
+        this.owner = owner;
     }
 
     public Color getAwtColor() {
-        if (color == null || color.isEmpty()) {
-            return null;
-        }
-        try {
-            return Color.decode(color);
-        } catch (NumberFormatException e) {
-            return null;
-        }
+        return argb != ColorCache.NONE ? ColorCache.get(argb) : null;
+    }
+
+    public ContainerInfo copy() {
+        return new ContainerInfo(this);
     }
 
     @Override
@@ -1,123 +1,536 @@
 package com.tamaygz.colorfuldiag.model;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Root model class for all diagram metadata.
  * This is the structure that gets serialized to JSON.
+ * <p>
+ * Containers and notes are indexed by ID, and tables by the container they belong to,
+ * so lookups are O(1). The indexes are transient: they are maintained by the mutators
+ * below and rebuilt when lists are replaced (e.g. after deserialization). The lists and
+ * maps returned by the getters are read-only views; change them through the mutators.
+ * <p>
+ * The resolved {@link TableColors} of every colored table are kept in a further index,
+ * so rendering a node is a single lookup. Recoloring a table or changing a container's
+ * color or members patches only the tables affected; reordering or replacing containers
+ * drops the index, and it is rebuilt on the next lookup.
+ * <p>
+ * Edits happen on one thread at a time (the EDT), but the table and color lookups are also
+ * made from background threads holding the cached instance. Those two indexes are therefore
+ * built into a local map and only then published, and patched in place only once published,
+ * so a lookup never sees a half-built index. A rebuild that raced an edit is not published.
  */
 public class DiagramMetadata {
     private Map<String, TableColorInfo> tables;
     private List<ContainerInfo> containers;
     private List<StickyNoteInfo> notes;
+    // Tag of the snapshot file this was read from, drawn anew for every write; 0 if never written.
+    // Journals name the generation they apply to (see MetadataJournal)
+    private long generation;
+    // True once element positions are diagram view coordinates. Older files hold overlay
+    // panel coordinates, which are converted once when the overlay starts following the view
+    private boolean viewCoordinates;
+
+    // Read-only views handed out by the getters
+    private transient Map<String, TableColorInfo> tablesView;
+    private transient List<ContainerInfo> containersView;
+    private transient List<StickyNoteInfo> notesView;
+
+    private transient Map<String, ContainerInfo> containersById;
+    private transient Map<String, StickyNoteInfo> notesById;
+    // First container (in z-order) holding each table; null until rebuilt after structural changes
+    private transient volatile Map<String, ContainerInfo> containersByTable;
+    // Resolved colors of tables that have any; null until rebuilt, patched per table otherwise
+    private transient volatile Map<String, TableColors> colorsByTable;
+    // Bumped whenever an index is dropped or an edit can't be patched into it, so a rebuild
+    // started before then isn't published. Written under indexLock
+    private transient volatile int indexVersion;
+    private final transient Object indexLock = new Object();
 
     public DiagramMetadata() {
-        this.tables = new HashMap<>();
-        this.containers = new ArrayList<>();
-        this.notes = new ArrayList<>();
+        setTables(null);
+        setContainers(null);
+        setNotes(null);
     }
 
     public Map<String, TableColorInfo> getTables() {
-        return tables;
+        return tablesView;
     }
 
     public void setTables(Map<String, TableColorInfo> tables) {
         this.tables = tables != null ? tables : new HashMap<>();
+        this.tablesView = Collections.unmodifiableMap(this.tables);
+        invalidateColorIndex();
+    }
+
+    public long getGeneration() {
+        return generation;
     }
 
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
+    public boolean isViewCoordinates() {
+        return viewCoordinates;
+    }
+
+    public void setViewCoordinates(boolean viewCoordinates) {
+        this.viewCoordinates = viewCoordinates;
+    }
+
+    /**
+     * Converts element positions from overlay panel coordinates to view coordinates through
+     * the view transform at the time (screen = view * scale + offset), and sets the marker.
+     * Does nothing if the positions already are view coordinates.
+     */
+    public void convertToViewCoordinates(int offsetX, int offsetY, double scale) {
+        if (viewCoordinates || !(scale > 0)) {
+            return;
+        }
+        viewCoordinates = true;
+        for (ContainerInfo container : containers) {
+            int[] bounds = container.getBounds();
+            if (bounds != null && bounds.length >= 4) {
+                container.setBounds(new int[]{toView(bounds[0], offsetX, scale), toView(bounds[1], offsetY, scale),
+                        toViewLength(bounds[2], scale), toViewLength(bounds[3], scale)});
+            }
+        }
+        for (StickyNoteInfo note : notes) {
+            int[] position = note.getPosition();
+            if (position != null && position.length >= 2) {
+                note.setPosition(new int[]{toView(position[0], offsetX, scale), toView(position[1], offsetY, scale)});
+            }
+            int[] size = note.getSize();
+            if (size != null && size.length >= 2) {
+                note.setSize(new int[]{toViewLength(size[0], scale), toViewLength(size[1], scale)});
+            }
+        }
+    }
+
+    private static int toView(int panel, int offset, double scale) {
+        return (int) Math.floor((panel - offset) / scale);
+    }
+
+    private static int toViewLength(int length, double scale) {
+        return Math.max(1, (int) Math.round(length / scale));
+    }
+
+    /**
+     * Containers in z-order, back to front.
+     */
     public List<ContainerInfo> getContainers() {
-        return containers;
+        return containersView;
     }
 
     public void setContainers(List<ContainerInfo> containers) {
+        if (this.containers != null) {
+            for (ContainerInfo container : this.containers) {
+                container.setOwner(null);
+            }
+        }
         this.containers = containers != null ? containers : new ArrayList<>();
+        this.containersView = Collections.unmodifiableList(this.containers);
+        this.containersById = new HashMap<>(Math.max(16, this.containers.size() * 2));
+        for (ContainerInfo container : this.containers) {
+            containersById.put(container.getId(), container);
+            container.setOwner(this);
+        }
+        invalidateTableIndex();
     }
 
+    /**
+     * Notes in z-order, back to front.
+     */
     public List<StickyNoteInfo> getNotes() {
-        return notes;
+        return notesView;
     }
 
     public void setNotes(List<StickyNoteInfo> notes) {
         this.notes = notes != null ? notes : new ArrayList<>();
+        this.notesView = Collections.unmodifiableList(this.notes);
+        this.notesById = new HashMap<>(Math.max(16, this.notes.size() * 2));
+        for (StickyNoteInfo note : this.notes) {
+            notesById.put(note.getId(), note);
+        }
     }
 
     // Table operations
     public void setTableColor(String tableId, String color) {
-        if (tables == null) {
-            tables = new HashMap<>();
-        }
         TableColorInfo info = new TableColorInfo(tableId, color);
         tables.put(tableId, info);
+        refreshColors(tableId);
     }
 
     public TableColorInfo getTableColor(String tableId) {
-        return tables != null ? tables.get(tableId) : null;
+        return tables.get(tableId);
     }
 
     public void removeTableColor(String tableId) {
-        if (tables != null) {
-            tables.remove(tableId);
+        if (tables.remove(tableId) != null) {
+            refreshColors(tableId);
         }
     }
 
+    public void clearTableColors() {
+        tables.clear();
+        invalidateColorIndex();
+    }
+
+    /**
+     * Returns the colors a table is drawn with: its own color if it has one, otherwise
+     * that of the first container holding it, or {@link TableColors#NONE}.
+     */
+    public TableColors getResolvedColors(String tableId) {
+        return tableId != null ? colorIndex().getOrDefault(tableId, TableColors.NONE) : TableColors.NONE;
+    }
+
     // Container operations
     public void addContainer(ContainerInfo container) {
-        if (containers == null) {
-            containers = new ArrayList<>();
-        }
         containers.add(container);
+        containersById.put(container.getId(), container);
+        container.setOwner(this);
+        Map<String, ContainerInfo> index = containersByTable;
+        if (index == null) {
+            invalidateTableIndex();
+            return;
+        }
+        for (String tableId : container.getTables()) {
+            if (tableId != null && index.putIfAbsent(tableId, container) == null) {
+                refreshColors(tableId);
+            }
+        }
+    }
+
+    /**
+     * Replaces the container with the same ID in place, or adds it if there is none.
+     */
+    public void putContainer(ContainerInfo container) {
+        ContainerInfo existing = containersById.get(container.getId());
+        if (existing == null) {
+            addContainer(container);
+            return;
+        }
+        containers.set(containers.indexOf(existing), container);
+        existing.setOwner(null);
+        containersById.put(container.getId(), container);
+        container.setOwner(this);
+        invalidateTableIndex();
     }
 
     public ContainerInfo getContainer(String containerId) {
-        if (containers == null) return null;
-        return containers.stream()
-                .filter(c -> c.getId().equals(containerId))
-                .findFirst()
-                .orElse(null);
+        return containersById.get(containerId);
     }
 
     public void removeContainer(String containerId) {
-        if (containers != null) {
-            containers.removeIf(c -> c.getId().equals(containerId));
+        ContainerInfo container = containersById.remove(containerId);
+        if (container != null) {
+            containers.remove(container);
+            container.setOwner(null);
+            invalidateTableIndex();
+        }
+    }
+
+    /**
+     * Moves a container to the top of the z-order.
+     */
+    public void moveContainerToFront(String containerId) {
+        ContainerInfo container = containersById.get(containerId);
+        if (container != null && containers.remove(container)) {
+            containers.add(container);
+            invalidateTableIndex();
         }
     }
 
+    /**
+     * Moves a container to the bottom of the z-order.
+     */
+    public void moveContainerToBack(String containerId) {
+        ContainerInfo container = containersById.get(containerId);
+        if (container != null && containers.remove(container)) {
+            containers.add(0, container);
+            invalidateTableIndex();
+        }
+    }
+
+    /**
+     * Sorts containers into the given ID order. Containers not listed keep their
+     * relative order after the listed ones.
+     */
+    public void reorderContainers(List<String> containerIds) {
+        reorder(containers, containerIds, containersById);
+        invalidateTableIndex();
+    }
+
     public ContainerInfo findContainerForTable(String tableId) {
-        if (containers == null) return null;
-        return containers.stream()
-                .filter(c -> c.containsTable(tableId))
-                .findFirst()
-                .orElse(null);
+        return tableId != null ? tableIndex().get(tableId) : null;
     }
 
     // Sticky note operations
     public void addNote(StickyNoteInfo note) {
-        if (notes == null) {
-            notes = new ArrayList<>();
-        }
         notes.add(note);
+        notesById.put(note.getId(), note);
+    }
+
+    /**
+     * Replaces the note with the same ID in place, or adds it if there is none.
+     */
+    public void putNote(StickyNoteInfo note) {
+        StickyNoteInfo existing = notesById.get(note.getId());
+        if (existing == null) {
+            addNote(note);
+            return;
+        }
+        notes.set(notes.indexOf(existing), note);
+        notesById.put(note.getId(), note);
     }
 
     public StickyNoteInfo getNote(String noteId) {
-        if (notes == null) return null;
-        return notes.stream()
-                .filter(n -> n.getId().equals(noteId))
-                .findFirst()
-                .orElse(null);
+        return notesById.get(noteId);
     }
 
     public void removeNote(String noteId) {
-        if (notes != null) {
-            notes.removeIf(n -> n.getId().equals(noteId));
+        StickyNoteInfo note = notesById.remove(noteId);
+        if (note != null) {
+            notes.remove(note);
+        }
+    }
+
+    /**
+     * Moves a note to the top of the z-order.
+     */
+    public void moveNoteToFront(String noteId) {
+        StickyNoteInfo note = notesById.get(noteId);
+        if (note != null && notes.remove(note)) {
+            notes.add(note);
+        }
+    }
+
+    /**
+     * Sorts notes into the given ID order. Notes not listed keep their
+     * relative order after the listed ones.
+     */
+    public void reorderNotes(List<String> noteIds) {
+        reorder(notes, noteIds, notesById);
+    }
+
+    // Index maintenance, called by ContainerInfo when its membership changes
+    void tableAdded(ContainerInfo container, String tableId) {
+        Map<String, ContainerInfo> index = containersByTable;
+        if (index == null || tableId == null) {
+            invalidateTableIndex();
+            return;
+        }
+        ContainerInfo current = index.get(tableId);
+        if (current == null) {
+            index.put(tableId, container);
+            refreshColors(tableId);
+        } else if (current != container) {
+            // The first container in z-order must win
+            invalidateTableIndex();
+        }
+    }
+
+    void tableRemoved(ContainerInfo container, String tableId) {
+        Map<String, ContainerInfo> index = containersByTable;
+        if (index == null || tableId == null) {
+            invalidateTableIndex();
+            return;
+        }
+        if (index.get(tableId) == container) {
+            // Fall back to the next container in z-order holding the table, if any
+            index.remove(tableId);
+            for (ContainerInfo other : containers) {
+                if (other.containsTable(tableId)) {
+                    index.put(tableId, other);
+                    break;
+                }
+            }
+            refreshColors(tableId);
+        }
+    }
+
+    void containerRecolored(ContainerInfo container) {
+        if (colorsByTable == null) {
+            invalidateColorIndex();
+            return;
+        }
+        for (String tableId : container.getTables()) {
+            refreshColors(tableId);
+        }
+    }
+
+    void invalidateTableIndex() {
+        synchronized (indexLock) {
+            indexVersion++;
+            containersByTable = null;
+            colorsByTable = null;
+        }
+    }
+
+    private void invalidateColorIndex() {
+        synchronized (indexLock) {
+            indexVersion++;
+            colorsByTable = null;
+        }
+    }
+
+    private Map<String, ContainerInfo> tableIndex() {
+        Map<String, ContainerInfo> index = containersByTable;
+        if (index != null) {
+            return index;
+        }
+        int version;
+        do {
+            version = indexVersion;
+            index = buildTableIndex();
+        } while (index == null);
+        synchronized (indexLock) {
+            if (version == indexVersion && containersByTable == null) {
+                containersByTable = index;
+            }
+        }
+        return index;
+    }
+
+    private Map<String, TableColors> colorIndex() {
+        Map<String, TableColors> index = colorsByTable;
+        if (index != null) {
+            return index;
+        }
+        int version;
+        do {
+            version = indexVersion;
+            index = buildColorIndex(tableIndex());
+        } while (index == null);
+        synchronized (indexLock) {
+            if (version == indexVersion && colorsByTable == null) {
+                colorsByTable = index;
+            }
+        }
+        return index;
+    }
+
+    // The builders return null if an edit on another thread got in the way; the caller starts over
+    private Map<String, ContainerInfo> buildTableIndex() {
+        Map<String, ContainerInfo> index = new ConcurrentHashMap<>();
+        try {
+            for (ContainerInfo container : containers) {
+                for (String tableId : container.getTables()) {
+                    if (tableId != null) {
+                        index.putIfAbsent(tableId, container);
+                    }
+                }
+            }
+        } catch (ConcurrentModificationException e) {
+            return null;
+        }
+        return index;
+    }
+
+    private Map<String, TableColors> buildColorIndex(Map<String, ContainerInfo> tableIndex) {
+        Map<String, TableColors> index = new ConcurrentHashMap<>(Math.max(16, tables.size() * 2));
+        try {
+            for (ContainerInfo container : containers) {
+                TableColors colors = TableColors.of(container.getArgb());
+                if (colors.isNone()) {
+                    continue;
+                }
+                for (String tableId : container.getTables()) {
+                    if (tableId != null && tableIndex.get(tableId) == container) {
+                        index.put(tableId, colors);
+                    }
+                }
+            }
+            for (Map.Entry<String, TableColorInfo> entry : tables.entrySet()) {
+                int argb = entry.getValue().getArgb();
+                if (entry.getKey() != null && argb != ColorCache.NONE) {
+                    index.put(entry.getKey(), TableColors.of(argb));
+                }
+            }
+        } catch (ConcurrentModificationException e) {
+            return null;
+        }
+        return index;
+    }
+
+    /**
+     * Re-resolves one table's colors after its own color or its container changed.
+     */
+    private void refreshColors(String tableId) {
+        Map<String, TableColors> index = colorsByTable;
+        if (index == null || tableId == null) {
+            invalidateColorIndex();
+            return;
+        }
+        TableColors colors = resolveColors(tableId);
+        if (colors.isNone()) {
+            index.remove(tableId);
+        } else {
+            index.put(tableId, colors);
+        }
+    }
+
+    private TableColors resolveColors(String tableId) {
+        TableColorInfo info = tables.get(tableId);
+        if (info != null && info.getArgb() != ColorCache.NONE) {
+            return TableColors.of(info.getArgb());
+        }
+        ContainerInfo container = findContainerForTable(tableId);
+        return container != null ? TableColors.of(container.getArgb()) : TableColors.NONE;
+    }
+
+    private static <T> void reorder(List<T> list, List<String> ids, Map<String, T> byId) {
+        if (ids == null) {
+            return;
+        }
+        List<T> sorted = new ArrayList<>(list.size());
+        Set<T> placed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String id : ids) {
+            T element = byId.get(id);
+            if (element != null && placed.add(element)) {
+                sorted.add(element);
+            }
+        }
+        for (T element : list) {
+            if (placed.add(element)) {
+                sorted.add(element);
+            }
+        }
+        list.clear();
+        list.addAll(sorted);
+    }
+
+    /**
+     * Creates a deep copy of this metadata.
+     * Used to take a stable snapshot before handing metadata to a background writer.
+     */
+    public DiagramMetadata copy() {
+        DiagramMetadata copy = new DiagramMetadata();
+        copy.generation = generation;
+        copy.viewCoordinates = viewCoordinates;
+        for (Map.Entry<String, TableColorInfo> entry : tables.entrySet()) {
+            copy.tables.put(entry.getKey(), entry.getValue().copy());
+        }
+        for (ContainerInfo container : containers) {
+            copy.addContainer(container.copy());
+        }
+        for (StickyNoteInfo note : notes) {
+            copy.addNote(note.copy());
         }
+        return copy;
     }
 
     public boolean isEmpty() {
-        return (tables == null || tables.isEmpty())
-                && (containers == null || containers.isEmpty())
-                && (notes == null || notes.isEmpty());
+        return tables.isEmpty() && containers.isEmpty() && notes.isEmpty();
     }
 }
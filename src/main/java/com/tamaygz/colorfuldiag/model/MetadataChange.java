@@ -0,0 +1,300 @@
+package com.tamaygz.colorfuldiag.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A single typed edit of diagram metadata, such as moving a container or recoloring a note.
+ * <p>
+ * Changes carry the resulting state of what they touch (e.g. the new bounds, not a delta),
+ * so applying the same change twice gives the same result. Changes whose target no longer
+ * exists are ignored. All values are copied on creation, so a change is an immutable
+ * snapshot even though the model objects it was created from are mutable.
+ */
+public final class MetadataChange {
+
+    public enum Kind {
+        TABLE_COLORED,          // id = table, value = color (null removes it)
+        CONTAINER_ADDED,        // container
+        CONTAINER_REMOVED,      // id
+        CONTAINER_MOVED,        // id, geometry = bounds
+        CONTAINER_RESIZED,      // id, geometry = bounds
+        CONTAINER_RECOLORED,    // id, value = color
+        CONTAINER_RENAMED,      // id, value = title
+        CONTAINER_TABLES,       // id, ids = member tables
+        CONTAINERS_REORDERED,   // ids = container IDs back to front
+        NOTE_ADDED,             // note
+        NOTE_REMOVED,           // id
+        NOTE_MOVED,             // id, geometry = position
+        NOTE_RESIZED,           // id, geometry = position + size
+        NOTE_RECOLORED,         // id, value = color
+        NOTE_EDITED,            // id, value = text
+        NOTES_REORDERED,        // ids = note IDs back to front
+        VIEW_COORDINATES        // geometry = view offset, value = view scale; without them only the marker is set
+    }
+
+    private final Kind kind;
+    private final String id;
+    private final String value;
+    private final int[] geometry;
+    private final List<String> ids;
+    private final ContainerInfo container;
+    private final StickyNoteInfo note;
+
+    /**
+     * Creates a change from its raw fields; used when reading changes back from disk.
+     * Prefer the static factories otherwise.
+     */
+    public MetadataChange(Kind kind, String id, String value, int[] geometry, List<String> ids,
+                          ContainerInfo container, StickyNoteInfo note) {
+        this.kind = kind;
+        this.id = id;
+        this.value = value;
+        this.geometry = geometry != null ? geometry.clone() : null;
+        this.ids = ids != null ? Collections.unmodifiableList(new ArrayList<>(ids)) : null;
+        this.container = container != null ? container.copy() : null;
+        this.note = note != null ? note.copy() : null;
+    }
+
+    private static MetadataChange of(Kind kind, String id, String value) {
+        return new MetadataChange(kind, id, value, null, null, null, null);
+    }
+
+    private static MetadataChange of(Kind kind, String id, int[] geometry) {
+        return new MetadataChange(kind, id, null, geometry, null, null, null);
+    }
+
+    public static MetadataChange tableColored(String tableId, String color) {
+        return of(Kind.TABLE_COLORED, tableId, color);
+    }
+
+    public static MetadataChange containerAdded(ContainerInfo container) {
+        return new MetadataChange(Kind.CONTAINER_ADDED, container.getId(), null, null, null, container, null);
+    }
+
+    public static MetadataChange containerRemoved(String containerId) {
+        return of(Kind.CONTAINER_REMOVED, containerId, (String) null);
+    }
+
+    public static MetadataChange containerMoved(ContainerInfo container) {
+        return of(Kind.CONTAINER_MOVED, container.getId(), container.getBounds());
+    }
+
+    public static MetadataChange containerResized(ContainerInfo container) {
+        return of(Kind.CONTAINER_RESIZED, container.getId(), container.getBounds());
+    }
+
+    public static MetadataChange containerRecolored(ContainerInfo container) {
+        return of(Kind.CONTAINER_RECOLORED, container.getId(), container.getColor());
+    }
+
+    public static MetadataChange containerRenamed(ContainerInfo container) {
+        return of(Kind.CONTAINER_RENAMED, container.getId(), container.getTitle());
+    }
+
+    public static MetadataChange containerTables(ContainerInfo container) {
+        return new MetadataChange(Kind.CONTAINER_TABLES, container.getId(), null, null,
+                container.getTables(), null, null);
+    }
+
+    public static MetadataChange containersReordered(List<ContainerInfo> containers) {
+        return new MetadataChange(Kind.CONTAINERS_REORDERED, null, null, null,
+                idsOf(containers, ContainerInfo::getId), null, null);
+    }
+
+    public static MetadataChange noteAdded(StickyNoteInfo note) {
+        return new MetadataChange(Kind.NOTE_ADDED, note.getId(), null, null, null, null, note);
+    }
+
+    public static MetadataChange noteRemoved(String noteId) {
+        return of(Kind.NOTE_REMOVED, noteId, (String) null);
+    }
+
+    public static MetadataChange noteMoved(StickyNoteInfo note) {
+        return of(Kind.NOTE_MOVED, note.getId(), note.getPosition());
+    }
+
+    public static MetadataChange noteResized(StickyNoteInfo note) {
+        int[] pos = note.getPosition();
+        int[] size = note.getSize();
+        if (pos == null || pos.length < 2 || size == null || size.length < 2) {
+            return noteMoved(note);
+        }
+        return of(Kind.NOTE_RESIZED, note.getId(), new int[]{pos[0], pos[1], size[0], size[1]});
+    }
+
+    public static MetadataChange noteRecolored(StickyNoteInfo note) {
+        return of(Kind.NOTE_RECOLORED, note.getId(), note.getColor());
+    }
+
+    public static MetadataChange noteEdited(StickyNoteInfo note) {
+        return of(Kind.NOTE_EDITED, note.getId(), note.getText());
+    }
+
+    public static MetadataChange notesReordered(List<StickyNoteInfo> notes) {
+        return new MetadataChange(Kind.NOTES_REORDERED, null, null, null,
+                idsOf(notes, StickyNoteInfo::getId), null, null);
+    }
+
+    /**
+     * Converts panel coordinates to view coordinates through the given view transform
+     * (see {@link DiagramMetadata#convertToViewCoordinates}).
+     */
+    public static MetadataChange viewCoordinates(int offsetX, int offsetY, double scale) {
+        return new MetadataChange(Kind.VIEW_COORDINATES, null, Double.toString(scale),
+                new int[]{offsetX, offsetY}, null, null, null);
+    }
+
+    /**
+     * Marks metadata that has nothing to convert as being in view coordinates.
+     */
+    public static MetadataChange viewCoordinatesMarked() {
+        return of(Kind.VIEW_COORDINATES, null, (String) null);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The ID of the table, container or note this change targets.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public int[] getGeometry() {
+        return geometry != null ? geometry.clone() : null;
+    }
+
+    public List<String> getIds() {
+        return ids;
+    }
+
+    public ContainerInfo getContainer() {
+        return container != null ? container.copy() : null;
+    }
+
+    public StickyNoteInfo getNote() {
+        return note != null ? note.copy() : null;
+    }
+
+    /**
+     * Applies this change to the given metadata.
+     */
+    public void applyTo(DiagramMetadata metadata) {
+        switch (kind) {
+            case TABLE_COLORED -> {
+                if (value != null) {
+                    metadata.setTableColor(id, value);
+                } else {
+                    metadata.removeTableColor(id);
+                }
+            }
+            case CONTAINER_ADDED -> {
+                if (container != null) {
+                    metadata.putContainer(container.copy());
+                }
+            }
+            case CONTAINER_REMOVED -> metadata.removeContainer(id);
+            case CONTAINER_MOVED, CONTAINER_RESIZED -> {
+                ContainerInfo target = metadata.getContainer(id);
+                if (target != null && geometry != null) {
+                    target.setBounds(geometry.clone());
+                }
+            }
+            case CONTAINER_RECOLORED -> {
+                ContainerInfo target = metadata.getContainer(id);
+                if (target != null) {
+                    target.setColor(value);
+                }
+            }
+            case CONTAINER_RENAMED -> {
+                ContainerInfo target = metadata.getContainer(id);
+                if (target != null) {
+                    target.setTitle(value);
+                }
+            }
+            case CONTAINER_TABLES -> {
+                ContainerInfo target = metadata.getContainer(id);
+                if (target != null && ids != null) {
+                    target.setTables(new ArrayList<>(ids));
+                }
+            }
+            case CONTAINERS_REORDERED -> metadata.reorderContainers(ids);
+            case NOTE_ADDED -> {
+                if (note != null) {
+                    metadata.putNote(note.copy());
+                }
+            }
+            case NOTE_REMOVED -> metadata.removeNote(id);
+            case NOTE_MOVED -> {
+                StickyNoteInfo target = metadata.getNote(id);
+                if (target != null && geometry != null) {
+                    target.setPosition(geometry.clone());
+                }
+            }
+            case NOTE_RESIZED -> {
+                StickyNoteInfo target = metadata.getNote(id);
+                if (target != null && geometry != null && geometry.length >= 4) {
+                    target.setPosition(new int[]{geometry[0], geometry[1]});
+                    target.setSize(new int[]{geometry[2], geometry[3]});
+                }
+            }
+            case NOTE_RECOLORED -> {
+                StickyNoteInfo target = metadata.getNote(id);
+                if (target != null) {
+                    target.setColor(value);
+                }
+            }
+            case NOTE_EDITED -> {
+                StickyNoteInfo target = metadata.getNote(id);
+                if (target != null) {
+                    target.setText(value);
+                }
+            }
+            case NOTES_REORDERED -> metadata.reorderNotes(ids);
+            case VIEW_COORDINATES -> {
+                if (geometry == null) {
+                    metadata.setViewCoordinates(true);
+                } else if (geometry.length >= 2) {
+                    metadata.convertToViewCoordinates(geometry[0], geometry[1], parseScale(value));
+                }
+            }
+        }
+    }
+
+    /**
+     * The scale of a {@link Kind#VIEW_COORDINATES} change, or 0 (which converts nothing)
+     * if a damaged journal record lost it.
+     */
+    private static double parseScale(String value) {
+        try {
+            return value != null ? Double.parseDouble(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static <T> List<String> idsOf(List<T> items, Function<T, String> idOf) {
+        if (items == null) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>(items.size());
+        for (T item : items) {
+            result.add(idOf.apply(item));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return kind + (id != null ? "(" + id + ")" : "");
+    }
+}
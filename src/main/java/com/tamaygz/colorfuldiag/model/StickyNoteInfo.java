@@ -10,9 +10,13 @@ import java.util.UUID;
  * Represents a sticky note in the diagram.
  */
 public class StickyNoteInfo {
+    public static final String DEFAULT_COLOR = "#FFEAA7"; // Yellow
+    private static final int DEFAULT_ARGB = ColorCache.parse(DEFAULT_COLOR);
+
     private String id;
     private String text;
     private String color; // Hex color string
+    private transient int argb; // Decoded color, never ColorCache.NONE
     private int[] position; // [x, y]
     private int[] size; // [width, height]
 
@@ -20,13 +24,13 @@ public class StickyNoteInfo {
         this.id = UUID.randomUUID().toString();
         this.position = new int[]{0, 0};
         this.size = new int[]{150, 100};
-        this.color = "#FFEAA7"; // Default yellow color
+        setColor(DEFAULT_COLOR);
     }
 
     public StickyNoteInfo(String text, String color, int x, int y) {
         this();
         this.text = text;
-        this.color = color;
+        setColor(color);
         this.position = new int[]{x, y};
     }
     
@@ -37,6 +41,18 @@ public class StickyNoteInfo {
         this.text = text;
     }
 
+    /**
+     * Copy constructor; takes the id as-is so snapshots never touch UUID's SecureRandom.
+     */
+    private StickyNoteInfo(StickyNoteInfo source) {
+        this.id = source.id;
+        this.text = source.text;
+        this.color = source.color;
+        this.argb = source.argb;
+        this.position = source.position != null ? source.position.clone() : null;
+        this.size = source.size != null ? source.size.clone() : null;
+    }
+
     public String getId() {
         return id;
     }
@@ -59,10 +75,19 @@ public class StickyNoteInfo {
 
     public void setColor(String color) {
         this.color = color;
+        int parsed = ColorCache.parse(color);
+        this.argb = parsed != ColorCache.NONE ? parsed : DEFAULT_ARGB;
     }
     
     public void setColor(Color awtColor) {
-        this.color = awtColor != null ? TableColorInfo.colorToHex(awtColor) : "#FFEAA7";
+        setColor(awtColor != null ? TableColorInfo.colorToHex(awtColor) : DEFAULT_COLOR);
+    }
+
+    /**
+     * Returns the color as packed ARGB, falling back to the default yellow.
+     */
+    public int getArgb() {
+        return argb;
     }
 
     public int[] getPosition() {
@@ -104,14 +129,11 @@ public class StickyNoteInfo {
     }
 
     public Color getAwtColor() {
-        if (color == null || color.isEmpty()) {
-            return Color.decode("#FFEAA7"); // Default yellow
-        }
-        try {
-            return Color.decode(color);
-        } catch (NumberFormatException e) {
-            return Color.decode("#FFEAA7");
-        }
+        return ColorCache.get(argb);
+    }
+
+    public StickyNoteInfo copy() {
+        return new StickyNoteInfo(this);
     }
 
     @Override
@@ -9,13 +9,14 @@ import java.util.Objects;
 public class TableColorInfo {
     private String tableId;
     private String color; // Hex color string like "#FF0000"
+    private transient int argb; // Decoded color, ColorCache.NONE if unset or invalid
 
     public TableColorInfo() {
     }
 
     public TableColorInfo(String tableId, String color) {
         this.tableId = tableId;
-        this.color = color;
+        setColor(color);
     }
 
     public String getTableId() {
@@ -32,17 +33,22 @@ public class TableColorInfo {
 
     public void setColor(String color) {
         this.color = color;
+        this.argb = ColorCache.parse(color);
+    }
+
+    /**
+     * Returns the color as packed ARGB, or {@link ColorCache#NONE} if none is set.
+     */
+    public int getArgb() {
+        return argb;
     }
 
     public Color getAwtColor() {
-        if (color == null || color.isEmpty()) {
-            return null;
-        }
-        try {
-            return Color.decode(color);
-        } catch (NumberFormatException e) {
-            return null;
-        }
+        return argb != ColorCache.NONE ? ColorCache.get(argb) : null;
+    }
+
+    public TableColorInfo copy() {
+        return new TableColorInfo(tableId, color);
     }
 
     public static String colorToHex(Color color) {
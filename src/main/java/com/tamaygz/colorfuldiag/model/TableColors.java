@@ -0,0 +1,76 @@
+package com.tamaygz.colorfuldiag.model;
+
+import java.awt.Color;
+
+/**
+ * The colors a table node is drawn with, resolved from its own color or its container's.
+ * <p>
+ * Header and border are fixed shades of the base color and the text color is whichever
+ * of black or white reads better on it, so all four are derived once per base color.
+ * Instances are immutable; {@link #NONE} stands for a table without any custom color.
+ */
+public final class TableColors {
+
+    public static final TableColors NONE = new TableColors(ColorCache.NONE);
+
+    private static final float HEADER_DARKEN = 0.15f;
+    private static final float BORDER_DARKEN = 0.3f;
+
+    private final int argb;
+    private final Color base;
+    private final Color header;
+    private final Color border;
+    private final Color text;
+
+    private TableColors(int argb) {
+        this.argb = argb;
+        if (argb == ColorCache.NONE) {
+            this.base = null;
+            this.header = null;
+            this.border = null;
+            this.text = Color.BLACK;
+        } else {
+            this.base = ColorCache.get(argb);
+            this.header = ColorCache.get(ColorCache.darken(argb, HEADER_DARKEN));
+            this.border = ColorCache.get(ColorCache.darken(argb, BORDER_DARKEN));
+            this.text = ColorCache.isLight(argb) ? Color.BLACK : Color.WHITE;
+        }
+    }
+
+    /**
+     * Resolves the colors for a packed ARGB base color; {@link ColorCache#NONE} gives {@link #NONE}.
+     */
+    public static TableColors of(int argb) {
+        return argb == ColorCache.NONE ? NONE : new TableColors(argb);
+    }
+
+    public boolean isNone() {
+        return argb == ColorCache.NONE;
+    }
+
+    /**
+     * Returns the base color as packed ARGB, or {@link ColorCache#NONE} if there is none.
+     */
+    public int getArgb() {
+        return argb;
+    }
+
+    public Color getBase() {
+        return base;
+    }
+
+    public Color getHeader() {
+        return header;
+    }
+
+    public Color getBorder() {
+        return border;
+    }
+
+    /**
+     * Black or white, whichever contrasts better with the base color.
+     */
+    public Color getText() {
+        return text;
+    }
+}
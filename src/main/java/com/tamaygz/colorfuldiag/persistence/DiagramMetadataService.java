@@ -1,42 +1,133 @@
 package com.tamaygz.colorfuldiag.persistence;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.intellij.notification.Notification;
 import com.intellij.notification.NotificationType;
 import com.intellij.notification.Notifications;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.messages.MessageBusConnection;
+import com.tamaygz.colorfuldiag.metrics.Metric;
+import com.tamaygz.colorfuldiag.metrics.PluginMetrics;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
 
 /**
  * Project-level service for managing diagram metadata.
  * Handles loading, saving, and caching of metadata files.
+ * <p>
+ * Saves are write-behind: the cache is updated immediately and a snapshot is queued
+ * for a single background writer. Repeated saves for the same metadata path are
+ * coalesced into one write. Call {@link #flush()} to force pending writes to disk.
+ * <p>
+ * The cache is always keyed by the JSON metadata path. Depending on the
+ * {@link MetadataFormat} setting the data is saved either there or in the binary
+ * {@code .colorfuldiag.bin} sidecar, and the file in the other format is deleted;
+ * if both exist anyway, loading picks the newer one.
+ * The cache is bounded by weight (see {@link MetadataCache}); diagrams open in an
+ * editor are pinned with {@link #pin(VirtualFile)} so they are never evicted.
+ * <p>
+ * Typed edits published on {@link MetadataChangeListener#TOPIC}, or saved through
+ * {@link #saveChange(String, DiagramMetadata, MetadataChange)}, are appended to a
+ * {@code _colorfuldiag.journal} file instead of rewriting the whole snapshot, so their
+ * cost scales with the edit rather than the diagram. The journal is replayed on load
+ * and compacted into the snapshot when edits go idle, when it grows past
+ * {@value #MAX_JOURNAL_RECORDS} records, and on close.
+ * <p>
+ * Metadata files changed outside the plugin (VCS update, branch switch, external editor)
+ * are picked up through VFS events: the affected cache entries are reloaded in the
+ * background and published on {@link MetadataReloadListener#TOPIC}.
  */
 @Service(Service.Level.PROJECT)
-public final class DiagramMetadataService {
+public final class DiagramMetadataService implements Disposable {
     private static final Logger LOG = Logger.getInstance(DiagramMetadataService.class);
     private static final String METADATA_SUFFIX = "_colorfuldiag.json";
+    private static final String BINARY_METADATA_SUFFIX = ".colorfuldiag.bin";
+    private static final String JOURNAL_SUFFIX = "_colorfuldiag.journal";
+    private static final int MAX_JOURNAL_RECORDS = 500;
+    private static final int COMPACTION_IDLE_DELAY_MS = 5000;
     private static final String NOTIFICATION_GROUP = "ColorfulDiagrams";
+    private static final Pattern INVALID_FILENAME_CHARS = Pattern.compile("[<>:\"/\\\\|?*]");
 
     private final Project project;
     private final Gson gson;
-    private final ConcurrentHashMap<String, DiagramMetadata> metadataCache;
+    private final MetadataCache metadataCache;
+    private final MetadataFileStore fileStore;
+    private final DiagramPathRegistry pathRegistry;
+
+    // Write-behind queue: latest snapshot per metadata path, drained by a single writer
+    private final ConcurrentHashMap<String, DiagramMetadata> pendingWrites;
+    private final ExecutorService writeExecutor;
+    private final Object writeLock = new Object();
+
+    // Typed changes not yet in the journal; always newer than a queued snapshot for the same path
+    private final ConcurrentHashMap<String, List<MetadataChange>> pendingChanges = new ConcurrentHashMap<>();
+    private final MetadataJournal journal = new MetadataJournal();
+    // Records in each journal since its last compaction
+    private final ConcurrentHashMap<String, Integer> journalSizes = new ConcurrentHashMap<>();
+    // Generation of the snapshot on disk for each path, the base new journal records apply to
+    private final ConcurrentHashMap<String, Long> snapshotGenerations = new ConcurrentHashMap<>();
+    private final Alarm compactionAlarm;
+
+    // Modification time of each file as we last wrote it, to tell our own writes from external ones
+    private final ConcurrentHashMap<String, Long> ownWriteStamps = new ConcurrentHashMap<>();
+    private static final long DELETED_STAMP = -1L;
 
     public DiagramMetadataService(Project project) {
         this.project = project;
-        this.gson = new GsonBuilder()
+        this.gson = MetadataJsonAdapters.register(new GsonBuilder())
                 .setPrettyPrinting()
                 .create();
-        this.metadataCache = new ConcurrentHashMap<>();
+        this.fileStore = new MetadataFileStore(gson);
+        this.pathRegistry = DiagramPathRegistry.getInstance(project);
+        this.pendingWrites = new ConcurrentHashMap<>();
+        this.metadataCache = new MetadataCache(MetadataCache.maxWeightFromRegistry(), this::isDirty);
+        this.writeExecutor =
+                AppExecutorUtil.createBoundedApplicationPoolExecutor("ColorfulDiagrams Metadata Writer", 1);
+        this.compactionAlarm = new Alarm(Alarm.ThreadToUse.POOLED_THREAD, this);
+
+        MessageBusConnection connection = project.getMessageBus().connect(this);
+        connection.subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                onFilesChanged(events);
+            }
+        });
+        // Typed edits from the overlay and actions go to the journal
+        MetadataChangeListener journalWriter = (diagramPath, metadata, changes) -> {
+            String metadataPath = resolveMetadataFilePath(diagramPath);
+            for (MetadataChange change : changes) {
+                saveChange(metadataPath, metadata, change);
+            }
+        };
+        connection.subscribe(MetadataChangeListener.TOPIC, journalWriter);
     }
 
     public static DiagramMetadataService getInstance(Project project) {
@@ -53,7 +144,7 @@ public final class DiagramMetadataService {
             return null;
         }
         // Replace invalid filesystem characters with underscores
-        return filename.replaceAll("[<>:\"/\\\\|?*]", "_");
+        return INVALID_FILENAME_CHARS.matcher(filename).replaceAll("_");
     }
 
     /**
@@ -77,11 +168,89 @@ public final class DiagramMetadataService {
         if (diagramPath == null || diagramPath.isEmpty()) {
             return null;
         }
-        // Sanitize the entire path to handle schema identifiers with colons
-        String sanitized = sanitizeFilename(diagramPath);
-        int lastDot = sanitized.lastIndexOf('.');
-        String basePath = lastDot > 0 ? sanitized.substring(0, lastDot) : sanitized;
-        return basePath + METADATA_SUFFIX;
+        // Same result as for the VirtualFile: only the file name is sanitized, not the
+        // directories (a drive letter's colon must survive)
+        int lastSlash = diagramPath.lastIndexOf('/');
+        String parentPath = lastSlash >= 0 ? diagramPath.substring(0, lastSlash) : "";
+        String name = diagramPath.substring(lastSlash + 1);
+        int lastDot = name.lastIndexOf('.');
+        String nameWithoutExtension = lastDot > 0 ? name.substring(0, lastDot) : name;
+        return parentPath + "/" + sanitizeFilename(nameWithoutExtension) + METADATA_SUFFIX;
+    }
+
+    /**
+     * Like {@link #getMetadataFilePath(VirtualFile)}, but answers open diagrams of this
+     * project from {@link DiagramPathRegistry} without recomputing the path.
+     */
+    public String resolveMetadataFilePath(VirtualFile diagramFile) {
+        if (diagramFile == null) {
+            return null;
+        }
+        String cached = pathRegistry.findMetadataFilePath(diagramFile.getPath());
+        return cached != null ? cached : getMetadataFilePath(diagramFile);
+    }
+
+    /**
+     * Like {@link #getMetadataFilePath(String)}, but answers open diagrams of this
+     * project from {@link DiagramPathRegistry} without recomputing the path.
+     */
+    public String resolveMetadataFilePath(String diagramPath) {
+        if (diagramPath == null || diagramPath.isEmpty()) {
+            return null;
+        }
+        String cached = pathRegistry.findMetadataFilePath(diagramPath);
+        return cached != null ? cached : getMetadataFilePath(diagramPath);
+    }
+
+    /**
+     * Gets the binary sidecar path that belongs to a JSON metadata path.
+     */
+    public static String getBinaryMetadataFilePath(String metadataPath) {
+        if (metadataPath == null) {
+            return null;
+        }
+        String basePath = metadataPath.endsWith(METADATA_SUFFIX)
+                ? metadataPath.substring(0, metadataPath.length() - METADATA_SUFFIX.length())
+                : metadataPath;
+        return basePath + BINARY_METADATA_SUFFIX;
+    }
+
+    /**
+     * Gets the change journal path that belongs to a JSON metadata path.
+     */
+    public static String getJournalFilePath(String metadataPath) {
+        if (metadataPath == null) {
+            return null;
+        }
+        String basePath = metadataPath.endsWith(METADATA_SUFFIX)
+                ? metadataPath.substring(0, metadataPath.length() - METADATA_SUFFIX.length())
+                : metadataPath;
+        return basePath + JOURNAL_SUFFIX;
+    }
+
+    /**
+     * Chooses which file to load for a metadata path: whichever of the JSON file and the
+     * binary sidecar exists, or the newer one if both do. On a modification time tie
+     * (coarse timestamps) the configured save format wins.
+     */
+    private static Path selectSourceFile(String metadataPath) {
+        Path jsonPath = Path.of(metadataPath);
+        Path binaryPath = Path.of(getBinaryMetadataFilePath(metadataPath));
+        try {
+            if (!Files.exists(binaryPath)) {
+                return jsonPath;
+            }
+            if (!Files.exists(jsonPath)) {
+                return binaryPath;
+            }
+            int order = Files.getLastModifiedTime(binaryPath).compareTo(Files.getLastModifiedTime(jsonPath));
+            if (order == 0) {
+                return MetadataFormat.fromRegistry() == MetadataFormat.BINARY ? binaryPath : jsonPath;
+            }
+            return order > 0 ? binaryPath : jsonPath;
+        } catch (IOException e) {
+            return jsonPath;
+        }
     }
 
     /**
@@ -93,7 +262,7 @@ public final class DiagramMetadataService {
             return new DiagramMetadata();
         }
 
-        String metadataPath = getMetadataFilePath(diagramFile);
+        String metadataPath = resolveMetadataFilePath(diagramFile);
         if (metadataPath == null) {
             return new DiagramMetadata();
         }
@@ -122,26 +291,119 @@ public final class DiagramMetadataService {
             return cached;
         }
 
-        Path path = Path.of(metadataPath);
-        if (!Files.exists(path)) {
-            DiagramMetadata empty = new DiagramMetadata();
-            metadataCache.put(metadataPath, empty);
-            return empty;
+        // Queued writes are newer than whatever is on disk. Take the queued changes first:
+        // if the writer journals them meanwhile, the disk read sees them and re-applying is harmless.
+        List<MetadataChange> queued = queuedChanges(metadataPath);
+        DiagramMetadata pending = pendingWrites.get(metadataPath);
+        DiagramMetadata metadata = pending != null ? pending.copy() : readFromDisk(metadataPath);
+        for (MetadataChange change : queued) {
+            change.applyTo(metadata);
+        }
+        // Don't keep an empty entry for every path ever probed, only for open diagrams.
+        // Callers that fill it in save it, which caches it then.
+        if (!metadata.isEmpty() || metadataCache.isPinned(metadataPath)) {
+            metadataCache.put(metadataPath, metadata);
         }
+        return metadata;
+    }
 
+    /**
+     * Reads metadata from disk without touching the cache, falling back to the backup
+     * if the file is missing or damaged.
+     */
+    @NotNull
+    private DiagramMetadata readFromDisk(String metadataPath) {
+        Path path = selectSourceFile(metadataPath);
+        DiagramMetadata metadata;
+        long start = PluginMetrics.start();
         try {
-            String json = Files.readString(path, StandardCharsets.UTF_8);
-            DiagramMetadata metadata = gson.fromJson(json, DiagramMetadata.class);
-            if (metadata == null) {
-                metadata = new DiagramMetadata();
+            if (!Files.exists(path) && fileStore.hasBackup(path)) {
+                // Crashed between rotating the old file and moving the new one into place
+                LOG.warn("Metadata file missing, using backup: " + metadataPath);
+                metadata = fileStore.readBackup(path);
+            } else {
+                metadata = readSnapshotWithJournal(metadataPath);
             }
-            metadataCache.put(metadataPath, metadata);
-            return metadata;
         } catch (IOException e) {
             LOG.warn("Failed to load metadata from: " + metadataPath, e);
-            showNotification("Failed to load diagram metadata", NotificationType.WARNING);
-            return new DiagramMetadata();
+            metadata = fileStore.readBackup(path);
+            if (metadata == null) {
+                showNotification("Failed to load diagram metadata", NotificationType.WARNING);
+                return new DiagramMetadata();
+            }
+            showNotification("Diagram metadata was damaged; restored the last saved backup", NotificationType.WARNING);
+        } finally {
+            PluginMetrics.stop(Metric.METADATA_LOAD, start);
+        }
+        return metadata != null ? metadata : new DiagramMetadata();
+    }
+
+    /**
+     * Reads the current snapshot and replays its journal on top. Unlike
+     * {@link #readFromDisk(String)} this fails instead of falling back, so compaction
+     * never writes a partial state over good data.
+     */
+    @NotNull
+    private DiagramMetadata readSnapshotWithJournal(String metadataPath) throws IOException {
+        Path path = selectSourceFile(metadataPath);
+        DiagramMetadata metadata = fileStore.read(path);
+        if (metadata == null) {
+            metadata = new DiagramMetadata();
         }
+        snapshotGenerations.put(metadataPath, metadata.getGeneration());
+        List<MetadataChange> changes =
+                journal.read(Path.of(getJournalFilePath(metadataPath)), metadata.getGeneration());
+        for (MetadataChange change : changes) {
+            change.applyTo(metadata);
+        }
+        if (!changes.isEmpty()) {
+            // Left over from a previous session; fold it in once edits go idle
+            journalSizes.putIfAbsent(metadataPath, changes.size());
+            scheduleCompaction();
+        }
+        return metadata;
+    }
+
+    /**
+     * The journal base for a metadata path: the generation of its snapshot on disk,
+     * or 0 if there is none. Read from disk only if this session hasn't seen the snapshot.
+     */
+    private long snapshotGeneration(String metadataPath) throws IOException {
+        Long known = snapshotGenerations.get(metadataPath);
+        if (known != null) {
+            return known;
+        }
+        DiagramMetadata snapshot = fileStore.read(selectSourceFile(metadataPath));
+        long generation = snapshot != null ? snapshot.getGeneration() : 0L;
+        snapshotGenerations.put(metadataPath, generation);
+        return generation;
+    }
+
+    private static long nextGeneration() {
+        long generation;
+        do {
+            generation = ThreadLocalRandom.current().nextLong();
+        } while (generation == 0L);
+        return generation;
+    }
+
+    /**
+     * Loads metadata into the cache ahead of time, off the EDT, so the first open of a
+     * diagram doesn't parse on the UI thread. Paths already cached or with unsaved edits
+     * are skipped; loading stops early once the cache is full.
+     * Returns true if the path is now cached.
+     */
+    public boolean preload(@NotNull String metadataPath) {
+        if (metadataCache.containsKey(metadataPath) || isDirty(metadataPath) || metadataCache.isFull()) {
+            return metadataCache.containsKey(metadataPath);
+        }
+        DiagramMetadata metadata = readFromDisk(metadataPath);
+        if (metadata.isEmpty()) {
+            return false;
+        }
+        // A load on the EDT may have won the race; keep the instance the overlay already holds
+        metadataCache.putIfAbsent(metadataPath, metadata);
+        return true;
     }
 
     /**
@@ -152,37 +414,329 @@ public final class DiagramMetadataService {
             return;
         }
 
-        String metadataPath = getMetadataFilePath(diagramFile);
+        String metadataPath = resolveMetadataFilePath(diagramFile);
         saveMetadataToPath(metadataPath, metadata);
     }
 
     /**
      * Saves metadata to a specific file path.
+     * The cache is updated immediately; the disk write happens on the background writer.
      */
     public void saveMetadataToPath(String metadataPath, DiagramMetadata metadata) {
         if (metadataPath == null || metadata == null) {
             return;
         }
 
+        metadataCache.put(metadataPath, metadata);
+
+        // Snapshot on the caller thread so the writer never sees a half-applied edit.
+        // Queued changes are part of the snapshot, and writing it resets the journal.
+        // Only schedule a write if none is queued yet; a queued one will pick up this snapshot.
+        pendingChanges.remove(metadataPath);
+        if (pendingWrites.put(metadataPath, metadata.copy()) == null) {
+            writeExecutor.execute(() -> writePending(metadataPath));
+        }
+        publishStatus();
+    }
+
+    /**
+     * Saves a single typed edit for a diagram file.
+     */
+    public void saveChange(VirtualFile diagramFile, DiagramMetadata metadata, @Nullable MetadataChange change) {
+        if (diagramFile == null || metadata == null) {
+            return;
+        }
+        saveChange(resolveMetadataFilePath(diagramFile), metadata, change);
+    }
+
+    /**
+     * Saves a single typed edit that has already been applied to {@code metadata}.
+     * The change is appended to the journal instead of rewriting the snapshot.
+     * A null change means the kind of edit is unknown and falls back to a full save.
+     */
+    public void saveChange(String metadataPath, DiagramMetadata metadata, @Nullable MetadataChange change) {
+        if (change == null) {
+            saveMetadataToPath(metadataPath, metadata);
+            return;
+        }
+        if (metadataPath == null || metadata == null) {
+            return;
+        }
+
+        if (metadataCache.get(metadataPath) != metadata) {
+            metadataCache.put(metadataPath, metadata);
+        }
+
+        boolean[] scheduled = {false};
+        pendingChanges.compute(metadataPath, (key, queued) -> {
+            if (queued == null) {
+                queued = new ArrayList<>();
+                scheduled[0] = true;
+            }
+            queued.add(change);
+            return queued;
+        });
+        if (scheduled[0]) {
+            writeExecutor.execute(() -> writePending(metadataPath));
+        }
+        scheduleCompaction();
+    }
+
+    /**
+     * Writes all queued metadata snapshots and changes to disk on the calling thread.
+     * Called on project close and before export so disk state matches memory.
+     */
+    public void flush() {
+        Set<String> paths = new LinkedHashSet<>(pendingWrites.keySet());
+        paths.addAll(pendingChanges.keySet());
+        for (String metadataPath : paths) {
+            writePending(metadataPath);
+        }
+    }
+
+    /**
+     * Returns true if there are metadata writes that have not reached disk yet.
+     */
+    public boolean hasPendingWrites() {
+        return !pendingWrites.isEmpty() || !pendingChanges.isEmpty();
+    }
+
+    private boolean isDirty(String metadataPath) {
+        return pendingWrites.containsKey(metadataPath) || pendingChanges.containsKey(metadataPath);
+    }
+
+    @NotNull
+    private List<MetadataChange> queuedChanges(String metadataPath) {
+        List<MetadataChange> copy = new ArrayList<>();
+        pendingChanges.computeIfPresent(metadataPath, (key, queued) -> {
+            copy.addAll(queued);
+            return queued;
+        });
+        return copy;
+    }
+
+    private void writePending(String metadataPath) {
+        synchronized (writeLock) {
+            long start = PluginMetrics.start();
+            try {
+                // Snapshot first: any queued changes were made after it
+                DiagramMetadata snapshot = pendingWrites.remove(metadataPath);
+                if (snapshot != null && writeToDisk(metadataPath, snapshot)) {
+                    deleteJournal(metadataPath);
+                }
+                List<MetadataChange> changes = pendingChanges.remove(metadataPath);
+                if (changes != null) {
+                    appendToJournal(metadataPath, changes);
+                }
+            } finally {
+                PluginMetrics.stop(Metric.METADATA_SAVE, start);
+            }
+        }
+    }
+
+    private void appendToJournal(String metadataPath, List<MetadataChange> changes) {
+        try {
+            journal.append(Path.of(getJournalFilePath(metadataPath)), snapshotGeneration(metadataPath), changes,
+                    FsyncPolicy.fromRegistry());
+            int size = journalSizes.merge(metadataPath, changes.size(), Integer::sum);
+            if (size >= MAX_JOURNAL_RECORDS) {
+                compactJournal(metadataPath, List.of());
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to append to metadata journal, writing a full snapshot: " + metadataPath, e);
+            compactJournal(metadataPath, changes);
+        }
+    }
+
+    /**
+     * Folds the journal into the snapshot: reads snapshot and journal from disk, applies any
+     * extra changes, writes the result and deletes the journal.
+     */
+    private void compactJournal(String metadataPath, List<MetadataChange> extraChanges) {
+        synchronized (writeLock) {
+            DiagramMetadata metadata;
+            try {
+                metadata = readSnapshotWithJournal(metadataPath);
+            } catch (IOException e) {
+                LOG.warn("Skipping journal compaction, snapshot is unreadable: " + metadataPath, e);
+                return;
+            }
+            for (MetadataChange change : extraChanges) {
+                change.applyTo(metadata);
+            }
+            if (writeToDisk(metadataPath, metadata)) {
+                deleteJournal(metadataPath);
+            }
+        }
+    }
+
+    /**
+     * Compacts every journal that has records, after pending writes for it are done.
+     */
+    private void compactJournals() {
+        for (String metadataPath : new ArrayList<>(journalSizes.keySet())) {
+            writeExecutor.execute(() -> {
+                writePending(metadataPath);
+                if (journalSizes.containsKey(metadataPath)) {
+                    compactJournal(metadataPath, List.of());
+                }
+            });
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (compactionAlarm.isDisposed()) {
+            return;
+        }
+        compactionAlarm.cancelAllRequests();
+        compactionAlarm.addRequest(this::compactJournals, COMPACTION_IDLE_DELAY_MS);
+    }
+
+    private void deleteJournal(String metadataPath) {
+        journalSizes.remove(metadataPath);
         try {
-            Path path = Path.of(metadataPath);
+            journal.delete(Path.of(getJournalFilePath(metadataPath)));
+        } catch (IOException e) {
+            // A leftover journal is harmless: its base no longer matches the new snapshot
+            LOG.warn("Failed to delete metadata journal: " + metadataPath, e);
+        }
+    }
+
+    /**
+     * Writes a full snapshot. Returns false if the write failed.
+     */
+    private boolean writeToDisk(String metadataPath, DiagramMetadata metadata) {
+        try {
+            Path jsonPath = Path.of(metadataPath);
+            Path binaryPath = Path.of(getBinaryMetadataFilePath(metadataPath));
 
             // Don't create empty files
             if (metadata.isEmpty()) {
-                if (Files.exists(path)) {
-                    Files.delete(path);
-                    metadataCache.remove(metadataPath);
-                }
-                return;
+                fileStore.delete(jsonPath);
+                fileStore.delete(binaryPath);
+                ownWriteStamps.put(jsonPath.toString(), DELETED_STAMP);
+                ownWriteStamps.put(binaryPath.toString(), DELETED_STAMP);
+                snapshotGenerations.put(metadataPath, 0L);
+                return true;
             }
 
-            String json = gson.toJson(metadata);
-            Files.writeString(path, json, StandardCharsets.UTF_8);
-            metadataCache.put(metadataPath, metadata);
-            LOG.info("Saved metadata to: " + metadataPath);
+            MetadataFormat format = MetadataFormat.fromRegistry();
+            Path target = format == MetadataFormat.BINARY ? binaryPath : jsonPath;
+            // A fresh generation orphans any journal written against the previous snapshot
+            metadata.setGeneration(nextGeneration());
+            fileStore.write(target, metadata, format, FsyncPolicy.fromRegistry());
+            snapshotGenerations.put(metadataPath, metadata.getGeneration());
+            ownWriteStamps.put(target.toString(), Files.getLastModifiedTime(target).toMillis());
+
+            // After a format switch the file in the other format is stale; don't let it be loaded
+            Path other = target == binaryPath ? jsonPath : binaryPath;
+            if (Files.exists(other)) {
+                ownWriteStamps.put(other.toString(), DELETED_STAMP);
+                try {
+                    fileStore.delete(other);
+                } catch (IOException e) {
+                    LOG.warn("Failed to delete metadata in the previous format: " + other, e);
+                }
+            }
+            LOG.info("Saved metadata to: " + target);
+            return true;
         } catch (IOException e) {
             LOG.error("Failed to save metadata to: " + metadataPath, e);
             showNotification("Failed to save diagram metadata", NotificationType.ERROR);
+            return false;
+        }
+    }
+
+    /**
+     * Collects cached metadata paths whose JSON file or binary sidecar changed on disk
+     * and reloads them off the EDT. Our own writes and paths with queued writes are skipped.
+     */
+    private void onFilesChanged(List<? extends VFileEvent> events) {
+        Set<String> changed = new LinkedHashSet<>();
+        for (VFileEvent event : events) {
+            collectChangedPath(event.getPath(), changed);
+            if (event instanceof VFileMoveEvent moveEvent) {
+                collectChangedPath(moveEvent.getNewPath(), changed);
+            } else if (event instanceof VFilePropertyChangeEvent propertyEvent && propertyEvent.isRename()) {
+                collectChangedPath(propertyEvent.getNewPath(), changed);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            for (String metadataPath : changed) {
+                reloadFromDisk(metadataPath);
+            }
+        });
+    }
+
+    private void collectChangedPath(String filePath, Set<String> changed) {
+        String metadataPath = toMetadataPath(filePath);
+        if (metadataPath == null || isOwnWrite(filePath)) {
+            return;
+        }
+        // The snapshot was replaced; look its generation up again before the next journal append
+        snapshotGenerations.remove(metadataPath);
+        // Local edits not yet on disk win over the external change
+        if (!metadataCache.containsKey(metadataPath) || isDirty(metadataPath)) {
+            return;
+        }
+        changed.add(metadataPath);
+    }
+
+    /**
+     * Maps a JSON metadata file or binary sidecar path to the JSON path the cache is keyed by.
+     * Returns null for any other file.
+     */
+    static String toMetadataPath(String filePath) {
+        if (filePath == null) {
+            return null;
+        }
+        if (filePath.endsWith(METADATA_SUFFIX)) {
+            return filePath;
+        }
+        if (filePath.endsWith(BINARY_METADATA_SUFFIX)) {
+            return filePath.substring(0, filePath.length() - BINARY_METADATA_SUFFIX.length()) + METADATA_SUFFIX;
+        }
+        return null;
+    }
+
+    private boolean isOwnWrite(String filePath) {
+        Long stamp = ownWriteStamps.get(Path.of(filePath).toString());
+        if (stamp == null) {
+            return false;
+        }
+        try {
+            Path path = Path.of(filePath);
+            long current = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : DELETED_STAMP;
+            return current == stamp;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void reloadFromDisk(String metadataPath) {
+        DiagramMetadata previous = metadataCache.get(metadataPath);
+        if (project.isDisposed() || previous == null || isDirty(metadataPath)) {
+            return;
+        }
+        DiagramMetadata metadata = readFromDisk(metadataPath);
+        // Only replace the entry if no save or invalidation raced with the reload
+        if (isDirty(metadataPath) || !metadataCache.replace(metadataPath, previous, metadata)) {
+            return;
+        }
+        LOG.info("Reloaded externally changed metadata: " + metadataPath);
+        ApplicationManager.getApplication().invokeLater(() -> {
+            project.getMessageBus().syncPublisher(MetadataReloadListener.TOPIC)
+                    .metadataReloaded(metadataPath, metadata);
+            publishStatus();
+        }, project.getDisposed());
+    }
+
+    private void publishStatus() {
+        if (!project.isDisposed()) {
+            project.getMessageBus().syncPublisher(DiagramStatusListener.TOPIC).statusChanged();
         }
     }
 
@@ -190,7 +744,7 @@ public final class DiagramMetadataService {
      * Gets or creates metadata for a diagram, caching it for future use.
      */
     public DiagramMetadata getOrCreateMetadata(String diagramPath) {
-        String metadataPath = getMetadataFilePath(diagramPath);
+        String metadataPath = resolveMetadataFilePath(diagramPath);
         if (metadataPath == null) {
             return new DiagramMetadata();
         }
@@ -207,12 +761,40 @@ public final class DiagramMetadataService {
      * Invalidates the cache for a specific diagram.
      */
     public void invalidateCache(String diagramPath) {
-        String metadataPath = getMetadataFilePath(diagramPath);
+        String metadataPath = resolveMetadataFilePath(diagramPath);
         if (metadataPath != null) {
             metadataCache.remove(metadataPath);
         }
     }
 
+    /**
+     * Pins the metadata of an open diagram in the cache until {@link #unpin(VirtualFile)}.
+     * Pins are counted; every pin needs its own unpin.
+     */
+    public void pin(VirtualFile diagramFile) {
+        String metadataPath = resolveMetadataFilePath(diagramFile);
+        if (metadataPath != null) {
+            metadataCache.pin(metadataPath);
+        }
+    }
+
+    /**
+     * Releases one pin taken when the diagram was opened; the entry may be evicted once none are left.
+     */
+    public void unpin(VirtualFile diagramFile) {
+        String metadataPath = resolveMetadataFilePath(diagramFile);
+        if (metadataPath != null) {
+            metadataCache.unpin(metadataPath);
+        }
+    }
+
+    public void unpin(String diagramPath) {
+        String metadataPath = resolveMetadataFilePath(diagramPath);
+        if (metadataPath != null) {
+            metadataCache.unpin(metadataPath);
+        }
+    }
+
     /**
      * Clears all cached metadata.
      */
@@ -225,9 +807,9 @@ public final class DiagramMetadataService {
      */
     public void exportMetadata(String diagramPath, String exportPath) {
         DiagramMetadata metadata = getOrCreateMetadata(diagramPath);
+        flush();
         try {
-            String json = gson.toJson(metadata);
-            Files.writeString(Path.of(exportPath), json, StandardCharsets.UTF_8);
+            fileStore.export(Path.of(exportPath), metadata);
             showNotification("Metadata exported successfully", NotificationType.INFORMATION);
         } catch (IOException e) {
             LOG.error("Failed to export metadata to: " + exportPath, e);
@@ -240,8 +822,7 @@ public final class DiagramMetadataService {
      */
     public DiagramMetadata importMetadata(String importPath) {
         try {
-            String json = Files.readString(Path.of(importPath), StandardCharsets.UTF_8);
-            DiagramMetadata metadata = gson.fromJson(json, DiagramMetadata.class);
+            DiagramMetadata metadata = fileStore.read(Path.of(importPath));
             if (metadata != null) {
                 showNotification("Metadata imported successfully", NotificationType.INFORMATION);
             }
@@ -253,6 +834,15 @@ public final class DiagramMetadataService {
         }
     }
 
+    @Override
+    public void dispose() {
+        flush();
+        for (String metadataPath : new ArrayList<>(journalSizes.keySet())) {
+            compactJournal(metadataPath, List.of());
+        }
+        fileStore.syncWrittenFiles();
+    }
+
     private void showNotification(String content, NotificationType type) {
         Notification notification = new Notification(
                 NOTIFICATION_GROUP,
@@ -0,0 +1,126 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+
+/**
+ * Canonical identities of the open diagrams.
+ * <p>
+ * A diagram is reachable under several strings: its {@link VirtualFile#getPath() path},
+ * the same path in another format (separators, case, a drive colon), and the path of its
+ * metadata file. When the diagram is opened, each form is worked out once and mapped to
+ * one key, the file path at registration. Overlays and refreshes are tracked by that key,
+ * so resolving any form of the path is a map lookup instead of a comparison against
+ * every open diagram. The metadata path is kept with the key, so it is not recomputed on
+ * every load or save either.
+ * <p>
+ * Each project has its own registry, so the same diagram path open in two projects
+ * is registered and unregistered independently. Safe to use from any thread.
+ */
+@Service(Service.Level.PROJECT)
+public final class DiagramPathRegistry {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // Raw, normalized and metadata paths of registered diagrams, each mapped to its entry
+    private final Map<String, Entry> aliases = new ConcurrentHashMap<>();
+
+    private record Entry(String key, String normalizedPath, String metadataPath) {
+    }
+
+    public static DiagramPathRegistry getInstance(@NotNull Project project) {
+        return project.getService(DiagramPathRegistry.class);
+    }
+
+    /**
+     * Registers an opened diagram and returns its key. Registering it again is a no-op.
+     */
+    @NotNull
+    public String register(@NotNull VirtualFile diagramFile) {
+        String path = diagramFile.getPath();
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            return entry.key();
+        }
+        entry = new Entry(path, normalize(path), DiagramMetadataService.getMetadataFilePath(diagramFile));
+        Entry existing = entries.putIfAbsent(path, entry);
+        if (existing != null) {
+            return existing.key();
+        }
+        aliases.put(path, entry);
+        // Another open diagram may already own the normalized form; the first one keeps it
+        aliases.putIfAbsent(entry.normalizedPath(), entry);
+        aliases.putIfAbsent(entry.metadataPath(), entry);
+        return entry.key();
+    }
+
+    /**
+     * Forgets a closed diagram. Accepts any path form {@link #resolve} accepts.
+     */
+    public void unregister(@Nullable String diagramPath) {
+        String key = resolve(diagramPath);
+        Entry entry = key != null ? entries.remove(key) : null;
+        if (entry != null) {
+            aliases.remove(entry.key(), entry);
+            aliases.remove(entry.normalizedPath(), entry);
+            aliases.remove(entry.metadataPath(), entry);
+        }
+    }
+
+    /**
+     * Returns the key of the registered diagram a path refers to, or null if none does.
+     * The path may be the diagram path in any format or its metadata file path.
+     */
+    @Nullable
+    public String resolve(@Nullable String path) {
+        if (path == null || aliases.isEmpty()) {
+            return null;
+        }
+        Entry entry = aliases.get(path);
+        if (entry == null) {
+            entry = aliases.get(normalize(path));
+        }
+        return entry != null ? entry.key() : null;
+    }
+
+    /**
+     * Returns the key for a path if its diagram is registered, otherwise the path itself.
+     */
+    @NotNull
+    public String canonicalize(@NotNull String path) {
+        String key = resolve(path);
+        return key != null ? key : path;
+    }
+
+    /**
+     * Returns the cached metadata file path of a registered diagram, or null if the path
+     * (as given, without normalizing) is not a registered diagram path.
+     */
+    @Nullable
+    String findMetadataFilePath(@Nullable String diagramPath) {
+        if (diagramPath == null) {
+            return null;
+        }
+        Entry entry = entries.get(diagramPath);
+        return entry != null ? entry.metadataPath() : null;
+    }
+
+    /**
+     * Puts a path in the form used for comparison: lower case, forward slashes, colons
+     * replaced the way metadata file names are sanitized, no doubled separators.
+     */
+    @NotNull
+    static String normalize(@NotNull String path) {
+        return path.toLowerCase(Locale.ROOT)
+                .replace('\\', '/')
+                .replace(':', '_')
+                .replace("//", "/");
+    }
+}
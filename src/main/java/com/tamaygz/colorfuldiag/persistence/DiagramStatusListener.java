@@ -0,0 +1,20 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import com.intellij.util.messages.Topic;
+
+/**
+ * Notified when something shown in the tool window status may have changed: an overlay
+ * was attached or closed, the selected diagram changed, or metadata was edited, saved
+ * or reloaded. Published by the editor listener, the overlay panels and
+ * {@link DiagramMetadataService}.
+ * <p>
+ * Events carry no details and may arrive in bursts and on any thread; subscribers are
+ * expected to coalesce them and re-read what they show.
+ */
+public interface DiagramStatusListener {
+
+    @Topic.ProjectLevel
+    Topic<DiagramStatusListener> TOPIC = new Topic<>("Colorful Diagrams status changed", DiagramStatusListener.class);
+
+    void statusChanged();
+}
@@ -0,0 +1,42 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import com.intellij.openapi.util.registry.Registry;
+
+/**
+ * Controls when metadata files are forced to stable storage.
+ * Configured through the {@code colorfuldiag.metadata.fsync} registry key.
+ */
+public enum FsyncPolicy {
+    NEVER,      // Rely on the OS to flush eventually (lowest save latency)
+    ON_CLOSE,   // Force all written files when the project closes
+    ALWAYS;     // Force every write before it replaces the old file (most durable)
+
+    private static final String REGISTRY_KEY = "colorfuldiag.metadata.fsync";
+
+    /**
+     * Parses a policy name such as "never", "on-close" or "always".
+     * Unknown values fall back to {@link #ON_CLOSE}.
+     */
+    public static FsyncPolicy parse(String value) {
+        if (value == null) {
+            return ON_CLOSE;
+        }
+        return switch (value.trim().toLowerCase().replace('_', '-')) {
+            case "never" -> NEVER;
+            case "always" -> ALWAYS;
+            default -> ON_CLOSE;
+        };
+    }
+
+    /**
+     * Reads the configured policy from the IDE registry.
+     */
+    public static FsyncPolicy fromRegistry() {
+        try {
+            return parse(Registry.stringValue(REGISTRY_KEY));
+        } catch (Exception e) {
+            // Key missing (e.g. outside the IDE) - use the default
+            return ON_CLOSE;
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
+import com.tamaygz.colorfuldiag.model.TableColorInfo;
+
+/**
+ * Compact binary encoding of {@link DiagramMetadata}.
+ * <p>
+ * Layout (all integers are unsigned LEB128 varints unless noted):
+ * <pre>
+ * magic "CDMB" (4 bytes), version
+ * generation: 8 bytes, big-endian (version 2 and later)
+ * flags: bit 0 = view coordinates (version 3 and later)
+ * string table: count, then (utf8 length, utf8 bytes) per entry
+ * tables:     count, then (key ref, tableId ref, color) per entry
+ * containers: count, then (id ref, title ref, color, bounds, table count, table refs)
+ * notes:      count, then (id ref, text ref, color, position, size)
+ * </pre>
+ * String refs are table index + 1, with 0 meaning null, so every table ID is stored once.
+ * Colors are a tag byte: 0 = null, 1 = packed RGB int (4 bytes), 2 = string ref for
+ * values that are not canonical {@code #RRGGBB}. Int arrays are a length (+1, 0 = null)
+ * followed by zig-zag encoded values, since coordinates may be negative.
+ */
+public final class MetadataBinaryCodec {
+
+    private static final byte[] MAGIC = {'C', 'D', 'M', 'B'};
+    private static final int VERSION = 3;
+
+    private static final int FLAG_VIEW_COORDINATES = 1;
+
+    private static final int COLOR_NULL = 0;
+    private static final int COLOR_PACKED = 1;
+    private static final int COLOR_STRING = 2;
+
+    private MetadataBinaryCodec() {
+    }
+
+    /**
+     * Returns true if the header starts with the binary format magic.
+     */
+    public static boolean isBinary(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int headerLength() {
+        return MAGIC.length;
+    }
+
+    public static void write(@NotNull OutputStream stream, @NotNull DiagramMetadata metadata) throws IOException {
+        StringTable strings = new StringTable();
+        collectStrings(metadata, strings);
+
+        DataOutputStream out = new DataOutputStream(stream);
+        out.write(MAGIC);
+        writeVarint(out, VERSION);
+        out.writeLong(metadata.getGeneration());
+        writeVarint(out, metadata.isViewCoordinates() ? FLAG_VIEW_COORDINATES : 0);
+
+        writeVarint(out, strings.values.size());
+        for (String value : strings.values) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+
+        Map<String, TableColorInfo> tables = metadata.getTables();
+        writeVarint(out, tables.size());
+        for (Map.Entry<String, TableColorInfo> entry : tables.entrySet()) {
+            TableColorInfo info = entry.getValue();
+            writeVarint(out, strings.ref(entry.getKey()));
+            writeVarint(out, strings.ref(info != null ? info.getTableId() : null));
+            writeColor(out, info != null ? info.getColor() : null, strings);
+        }
+
+        List<ContainerInfo> containers = metadata.getContainers();
+        writeVarint(out, containers.size());
+        for (ContainerInfo container : containers) {
+            writeVarint(out, strings.ref(container.getId()));
+            writeVarint(out, strings.ref(container.getTitle()));
+            writeColor(out, container.getColor(), strings);
+            writeIntArray(out, container.getBounds());
+            List<String> members = container.getTables();
+            writeVarint(out, members.size());
+            for (String tableId : members) {
+                writeVarint(out, strings.ref(tableId));
+            }
+        }
+
+        List<StickyNoteInfo> notes = metadata.getNotes();
+        writeVarint(out, notes.size());
+        for (StickyNoteInfo note : notes) {
+            writeVarint(out, strings.ref(note.getId()));
+            writeVarint(out, strings.ref(note.getText()));
+            writeColor(out, note.getColor(), strings);
+            writeIntArray(out, note.getPosition());
+            writeIntArray(out, note.getSize());
+        }
+        out.flush();
+    }
+
+    @NotNull
+    public static DiagramMetadata read(@NotNull InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(stream);
+        byte[] header = new byte[MAGIC.length];
+        in.readFully(header);
+        if (!isBinary(header, header.length)) {
+            throw new IOException("Not a binary metadata file");
+        }
+        int version = readVarint(in);
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported binary metadata version: " + version);
+        }
+        long generation = version >= 2 ? in.readLong() : 0L;
+        int flags = version >= 3 ? readVarint(in) : 0;
+
+        int stringCount = readVarint(in);
+        String[] strings = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            byte[] bytes = new byte[readVarint(in)];
+            in.readFully(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        DiagramMetadata metadata = new DiagramMetadata();
+        metadata.setGeneration(generation);
+        metadata.setViewCoordinates((flags & FLAG_VIEW_COORDINATES) != 0);
+
+        int tableCount = readVarint(in);
+        Map<String, TableColorInfo> tables = new HashMap<>(Math.max(16, tableCount * 2));
+        for (int i = 0; i < tableCount; i++) {
+            String key = string(strings, readVarint(in));
+            TableColorInfo info = new TableColorInfo();
+            info.setTableId(string(strings, readVarint(in)));
+            info.setColor(readColor(in, strings));
+            tables.put(key, info);
+        }
+        metadata.setTables(tables);
+
+        int containerCount = readVarint(in);
+        List<ContainerInfo> containers = new ArrayList<>(containerCount);
+        for (int i = 0; i < containerCount; i++) {
+            ContainerInfo container = new ContainerInfo();
+            container.setId(string(strings, readVarint(in)));
+            container.setTitle(string(strings, readVarint(in)));
+            container.setColor(readColor(in, strings));
+            container.setBounds(readIntArray(in));
+            int memberCount = readVarint(in);
+            List<String> members = new ArrayList<>(memberCount);
+            for (int j = 0; j < memberCount; j++) {
+                members.add(string(strings, readVarint(in)));
+            }
+            container.setTables(members);
+            containers.add(container);
+        }
+        metadata.setContainers(containers);
+
+        int noteCount = readVarint(in);
+        List<StickyNoteInfo> notes = new ArrayList<>(noteCount);
+        for (int i = 0; i < noteCount; i++) {
+            StickyNoteInfo note = new StickyNoteInfo();
+            note.setId(string(strings, readVarint(in)));
+            note.setText(string(strings, readVarint(in)));
+            note.setColor(readColor(in, strings));
+            note.setPosition(readIntArray(in));
+            note.setSize(readIntArray(in));
+            notes.add(note);
+        }
+        metadata.setNotes(notes);
+
+        return metadata;
+    }
+
+    private static void collectStrings(DiagramMetadata metadata, StringTable strings) {
+        for (Map.Entry<String, TableColorInfo> entry : metadata.getTables().entrySet()) {
+            strings.add(entry.getKey());
+            if (entry.getValue() != null) {
+                strings.add(entry.getValue().getTableId());
+                addColorString(entry.getValue().getColor(), strings);
+            }
+        }
+        for (ContainerInfo container : metadata.getContainers()) {
+            strings.add(container.getId());
+            strings.add(container.getTitle());
+            addColorString(container.getColor(), strings);
+            for (String tableId : container.getTables()) {
+                strings.add(tableId);
+            }
+        }
+        for (StickyNoteInfo note : metadata.getNotes()) {
+            strings.add(note.getId());
+            strings.add(note.getText());
+            addColorString(note.getColor(), strings);
+        }
+    }
+
+    private static void addColorString(String color, StringTable strings) {
+        if (color != null && parseCanonicalColor(color) < 0) {
+            strings.add(color);
+        }
+    }
+
+    /**
+     * Parses "#RRGGBB" with upper-case hex digits, the form the plugin writes.
+     * Returns -1 for anything else so it can be stored verbatim.
+     */
+    private static long parseCanonicalColor(String color) {
+        if (color.length() != 7 || color.charAt(0) != '#') {
+            return -1;
+        }
+        long rgb = 0;
+        for (int i = 1; i < 7; i++) {
+            char c = color.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'A' && c <= 'F') {
+                digit = c - 'A' + 10;
+            } else {
+                return -1;
+            }
+            rgb = (rgb << 4) | digit;
+        }
+        return rgb;
+    }
+
+    private static void writeColor(DataOutputStream out, String color, StringTable strings) throws IOException {
+        if (color == null) {
+            out.writeByte(COLOR_NULL);
+            return;
+        }
+        long rgb = parseCanonicalColor(color);
+        if (rgb >= 0) {
+            out.writeByte(COLOR_PACKED);
+            out.writeInt(0xFF000000 | (int) rgb);
+        } else {
+            out.writeByte(COLOR_STRING);
+            writeVarint(out, strings.ref(color));
+        }
+    }
+
+    private static String readColor(DataInputStream in, String[] strings) throws IOException {
+        int tag = in.readUnsignedByte();
+        return switch (tag) {
+            case COLOR_NULL -> null;
+            case COLOR_PACKED -> String.format("#%06X", in.readInt() & 0xFFFFFF);
+            case COLOR_STRING -> string(strings, readVarint(in));
+            default -> throw new IOException("Invalid color tag: " + tag);
+        };
+    }
+
+    private static void writeIntArray(DataOutputStream out, int[] values) throws IOException {
+        if (values == null) {
+            writeVarint(out, 0);
+            return;
+        }
+        writeVarint(out, values.length + 1);
+        for (int value : values) {
+            writeVarint(out, (value << 1) ^ (value >> 31));
+        }
+    }
+
+    private static int[] readIntArray(DataInputStream in) throws IOException {
+        int length = readVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        int[] values = new int[length - 1];
+        for (int i = 0; i < values.length; i++) {
+            int zigzag = readVarint(in);
+            values[i] = (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+        return values;
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated binary metadata");
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary metadata");
+    }
+
+    private static String string(String[] strings, int ref) throws IOException {
+        if (ref == 0) {
+            return null;
+        }
+        if (ref > strings.length) {
+            throw new IOException("Invalid string reference: " + ref);
+        }
+        return strings[ref - 1];
+    }
+
+    /**
+     * De-duplicated string table; entries keep insertion order.
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        void add(String value) {
+            if (value != null && !indexes.containsKey(value)) {
+                indexes.put(value, values.size());
+                values.add(value);
+            }
+        }
+
+        int ref(String value) {
+            return value == null ? 0 : indexes.get(value) + 1;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.intellij.openapi.util.registry.Registry;
+import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
+
+/**
+ * Bounded LRU cache of metadata keyed by JSON metadata path.
+ * <p>
+ * Entries are weighed by an estimate of their heap size (mostly note text and table
+ * count). When the total weight exceeds the limit, least recently used entries are
+ * evicted, except pinned ones (diagrams open in an editor) and dirty ones (writes
+ * still queued), so eviction never loses state. The weight of an entry is taken
+ * when it is put; in-place edits are picked up on the next save.
+ * <p>
+ * The limit is read from the {@code colorfuldiag.metadata.cache.maxWeight} registry key.
+ * All methods are thread-safe.
+ */
+public class MetadataCache {
+    private static final String REGISTRY_KEY = "colorfuldiag.metadata.cache.maxWeight";
+    private static final long DEFAULT_MAX_WEIGHT = 8L * 1024 * 1024;
+
+    // Rough per-object sizes in bytes, only used for relative weighing
+    private static final int BASE_WEIGHT = 256;
+    private static final int TABLE_WEIGHT = 128;
+    private static final int CONTAINER_WEIGHT = 160;
+    private static final int MEMBER_WEIGHT = 48;
+    private static final int NOTE_WEIGHT = 160;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Pin count per path; an entry is evictable again once every pin is released
+    private final Map<String, Integer> pinned = new HashMap<>();
+    private final Predicate<String> isDirty;
+    private final long maxWeight;
+    private long totalWeight;
+
+    public MetadataCache(long maxWeight, @NotNull Predicate<String> isDirty) {
+        this.maxWeight = maxWeight;
+        this.isDirty = isDirty;
+    }
+
+    /**
+     * Reads the configured weight limit from the IDE registry.
+     */
+    public static long maxWeightFromRegistry() {
+        try {
+            return Registry.intValue(REGISTRY_KEY);
+        } catch (Exception e) {
+            // Key missing (e.g. outside the IDE) - use the default
+            return DEFAULT_MAX_WEIGHT;
+        }
+    }
+
+    /**
+     * Estimates the retained size of metadata in bytes.
+     */
+    public static long estimateWeight(@NotNull DiagramMetadata metadata) {
+        long weight = BASE_WEIGHT + (long) metadata.getTables().size() * TABLE_WEIGHT;
+        for (ContainerInfo container : metadata.getContainers()) {
+            weight += CONTAINER_WEIGHT + (long) container.getTables().size() * MEMBER_WEIGHT;
+        }
+        for (StickyNoteInfo note : metadata.getNotes()) {
+            String text = note.getText();
+            weight += NOTE_WEIGHT + (text != null ? 2L * text.length() : 0);
+        }
+        return weight;
+    }
+
+    @Nullable
+    public synchronized DiagramMetadata get(@NotNull String metadataPath) {
+        Entry entry = entries.get(metadataPath);
+        return entry != null ? entry.metadata : null;
+    }
+
+    public synchronized boolean containsKey(@NotNull String metadataPath) {
+        return entries.containsKey(metadataPath);
+    }
+
+    public synchronized void put(@NotNull String metadataPath, @NotNull DiagramMetadata metadata) {
+        Entry previous = entries.put(metadataPath, new Entry(metadata, estimateWeight(metadata)));
+        if (previous != null) {
+            totalWeight -= previous.weight;
+        }
+        totalWeight += entries.get(metadataPath).weight;
+        evict();
+    }
+
+    /**
+     * Adds the entry unless one exists. Returns false if the key was already present.
+     */
+    public synchronized boolean putIfAbsent(@NotNull String metadataPath, @NotNull DiagramMetadata metadata) {
+        if (entries.containsKey(metadataPath)) {
+            return false;
+        }
+        put(metadataPath, metadata);
+        return true;
+    }
+
+    /**
+     * Replaces the entry only if it still maps to the expected instance.
+     */
+    public synchronized boolean replace(@NotNull String metadataPath, @NotNull DiagramMetadata expected,
+                                        @NotNull DiagramMetadata metadata) {
+        Entry entry = entries.get(metadataPath);
+        if (entry == null || entry.metadata != expected) {
+            return false;
+        }
+        put(metadataPath, metadata);
+        return true;
+    }
+
+    public synchronized void remove(@NotNull String metadataPath) {
+        Entry entry = entries.remove(metadataPath);
+        if (entry != null) {
+            totalWeight -= entry.weight;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    /**
+     * Keeps the entry in memory, regardless of weight, until each pin is matched
+     * by an {@link #unpin(String)}.
+     */
+    public synchronized void pin(@NotNull String metadataPath) {
+        pinned.merge(metadataPath, 1, Integer::sum);
+    }
+
+    public synchronized void unpin(@NotNull String metadataPath) {
+        Integer count = pinned.get(metadataPath);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pinned.put(metadataPath, count - 1);
+        } else {
+            pinned.remove(metadataPath);
+            evict();
+        }
+    }
+
+    public synchronized boolean isPinned(@NotNull String metadataPath) {
+        return pinned.containsKey(metadataPath);
+    }
+
+    /**
+     * Returns true once the cache holds as much as it may keep.
+     */
+    public synchronized boolean isFull() {
+        return totalWeight >= maxWeight;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return totalWeight;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && it.hasNext()) {
+            Map.Entry<String, Entry> candidate = it.next();
+            String metadataPath = candidate.getKey();
+            if (pinned.containsKey(metadataPath) || isDirty.test(metadataPath)) {
+                continue;
+            }
+            totalWeight -= candidate.getValue().weight;
+            it.remove();
+        }
+    }
+
+    private record Entry(DiagramMetadata metadata, long weight) {
+    }
+}
@@ -0,0 +1,35 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.util.messages.Topic;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
+
+/**
+ * Notified on the EDT after typed edits were applied to a diagram's metadata, by the
+ * overlay (drag, resize, context menu) or by an action (coloring tables, changing
+ * container membership, adding containers and notes).
+ * <p>
+ * Each {@link MetadataChange} names the table, container or note it touched and carries
+ * its resulting state, so subscribers can update just that element: the metadata service
+ * appends the changes to the journal, the overlay re-indexes and repaints the affected
+ * elements, and the diagram view is refreshed only when table colors may have changed.
+ * Replacing the metadata as a whole still goes through
+ * {@link DiagramMetadataService#saveMetadataToPath}.
+ */
+public interface MetadataChangeListener {
+
+    @Topic.ProjectLevel
+    Topic<MetadataChangeListener> TOPIC = new Topic<>("Colorful Diagrams metadata changed", MetadataChangeListener.class);
+
+    /**
+     * @param diagramPath the path of the diagram file the metadata belongs to
+     * @param metadata    the metadata, with the changes already applied
+     * @param changes     the edits in the order they were made
+     */
+    void metadataChanged(@NotNull String diagramPath, @NotNull DiagramMetadata metadata,
+                         @NotNull List<MetadataChange> changes);
+}
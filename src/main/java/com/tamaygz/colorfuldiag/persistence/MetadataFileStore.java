@@ -0,0 +1,273 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import com.intellij.openapi.diagnostic.Logger;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+
+/**
+ * Crash-safe reading and writing of metadata files.
+ * <p>
+ * Writes go to a sibling temp file which is then moved over the target atomically,
+ * so a crash mid-write never leaves a truncated metadata file. The previous version
+ * is kept as a {@code .bak} file that {@link #readBackup(Path)} can fall back to.
+ * <p>
+ * Serialization streams through {@link MetadataJsonAdapters} or {@link MetadataBinaryCodec}
+ * straight from and to the file channel, so no whole-document String is ever built.
+ * The format of an existing file is detected from its first bytes.
+ * <p>
+ * This class has no project dependencies so it can be used from benchmarks as well.
+ */
+public class MetadataFileStore {
+    private static final Logger LOG = Logger.getInstance(MetadataFileStore.class);
+    private static final String BACKUP_SUFFIX = ".bak";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final Gson gson;
+    // Files written since the last sync, forced on close under FsyncPolicy.ON_CLOSE
+    private final Set<Path> unsyncedFiles = ConcurrentHashMap.newKeySet();
+
+    public MetadataFileStore(@NotNull Gson gson) {
+        this.gson = gson;
+    }
+
+    public static Path getBackupPath(@NotNull Path path) {
+        return path.resolveSibling(path.getFileName() + BACKUP_SUFFIX);
+    }
+
+    /**
+     * Reads metadata from the given file.
+     * Returns null if the file does not exist.
+     *
+     * @throws IOException if the file cannot be read or is not valid metadata
+     */
+    @Nullable
+    public DiagramMetadata read(@NotNull Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(path))) {
+            if (isBinary(in)) {
+                return MetadataBinaryCodec.read(in);
+            }
+            return readJson(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (JsonParseException | IllegalStateException | NumberFormatException e) {
+            // Structurally invalid JSON surfaces as unchecked exceptions from the reader
+            throw new IOException("Corrupt metadata file: " + path, e);
+        }
+    }
+
+    private static boolean isBinary(InputStream in) throws IOException {
+        byte[] header = new byte[MetadataBinaryCodec.headerLength()];
+        in.mark(header.length);
+        int read = in.readNBytes(header, 0, header.length);
+        in.reset();
+        return MetadataBinaryCodec.isBinary(header, read);
+    }
+
+    /**
+     * Reads metadata from a JSON stream. An empty stream yields empty metadata.
+     */
+    @NotNull
+    public DiagramMetadata readJson(@NotNull Reader reader) throws IOException {
+        JsonReader jsonReader = gson.newJsonReader(reader);
+        jsonReader.setLenient(true);
+        try {
+            jsonReader.peek();
+        } catch (EOFException e) {
+            return new DiagramMetadata();
+        }
+        DiagramMetadata metadata = MetadataJsonAdapters.METADATA.read(jsonReader);
+        return metadata != null ? metadata : new DiagramMetadata();
+    }
+
+    /**
+     * Writes metadata as JSON to a stream. The caller owns and closes the writer.
+     */
+    public void writeJson(@NotNull Writer writer, @NotNull DiagramMetadata metadata) throws IOException {
+        JsonWriter jsonWriter = gson.newJsonWriter(writer);
+        MetadataJsonAdapters.METADATA.write(jsonWriter, metadata);
+        jsonWriter.flush();
+    }
+
+    /**
+     * Writes metadata to an arbitrary JSON file (export), without temp file or backup.
+     */
+    public void export(@NotNull Path target, @NotNull DiagramMetadata metadata) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            writeJson(writer, metadata);
+        }
+    }
+
+    /**
+     * Reads the last-known-good backup of the given file.
+     * Returns null if there is no usable backup.
+     */
+    @Nullable
+    public DiagramMetadata readBackup(@NotNull Path path) {
+        Path backup = getBackupPath(path);
+        try {
+            return read(backup);
+        } catch (IOException e) {
+            LOG.warn("Backup is unusable: " + backup, e);
+            return null;
+        }
+    }
+
+    public boolean hasBackup(@NotNull Path path) {
+        return Files.exists(getBackupPath(path));
+    }
+
+    /**
+     * Writes metadata atomically: temp file, optional fsync, rotate current file to backup,
+     * then move the temp file into place.
+     */
+    public void write(@NotNull Path path, @NotNull DiagramMetadata metadata,
+                      @NotNull MetadataFormat format, @NotNull FsyncPolicy policy) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Path temp = createTemp(path);
+        try {
+            copyPermissions(path, temp);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                // Closing the stream would close the channel before we can force it
+                if (format == MetadataFormat.BINARY) {
+                    OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+                    MetadataBinaryCodec.write(out, metadata);
+                    out.flush();
+                } else {
+                    BufferedWriter writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+                    writeJson(writer, metadata);
+                    writer.flush();
+                }
+                if (policy == FsyncPolicy.ALWAYS) {
+                    channel.force(true);
+                }
+            }
+
+            // Keep the previous version as last-known-good
+            if (Files.exists(path)) {
+                moveReplacing(path, getBackupPath(path));
+            }
+            moveReplacing(temp, path);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+
+        if (policy == FsyncPolicy.ALWAYS) {
+            syncDirectory(dir);
+        } else if (policy == FsyncPolicy.ON_CLOSE) {
+            unsyncedFiles.add(path);
+        }
+    }
+
+    /**
+     * Deletes the metadata file and its backup.
+     */
+    public void delete(@NotNull Path path) throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(getBackupPath(path));
+        unsyncedFiles.remove(path);
+    }
+
+    /**
+     * Forces every file written since the last call to stable storage.
+     * Used on project close for {@link FsyncPolicy#ON_CLOSE}.
+     */
+    public void syncWrittenFiles() {
+        for (Path path : new ArrayList<>(unsyncedFiles)) {
+            unsyncedFiles.remove(path);
+            if (!Files.exists(path)) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            } catch (IOException e) {
+                LOG.warn("Failed to sync metadata file: " + path, e);
+            }
+            syncDirectory(path.toAbsolutePath().getParent());
+        }
+    }
+
+    /**
+     * Creates an empty sibling temp file with the platform's default permissions.
+     * {@link Files#createTempFile} would make it owner-only on POSIX, and that mode
+     * would then replace the target's on the move.
+     */
+    private static Path createTemp(Path path) throws IOException {
+        String prefix = path.getFileName().toString() + ".";
+        while (true) {
+            Path temp = path.resolveSibling(prefix + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // Name collision with a concurrent write, pick another
+            }
+        }
+    }
+
+    /**
+     * Gives the temp file the existing target's POSIX permissions so the move keeps them.
+     */
+    private static void copyPermissions(Path target, Path temp) throws IOException {
+        if (!Files.exists(target)) {
+            return;
+        }
+        try {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system; permissions are inherited from the directory
+        }
+    }
+
+    private static void moveReplacing(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Forces the directory entry so the rename itself survives a crash.
+     * Not supported on every platform (e.g. Windows), so failures are ignored.
+     */
+    private static void syncDirectory(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Best effort only
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import com.intellij.openapi.util.registry.Registry;
+
+/**
+ * On-disk encoding used when saving diagram metadata.
+ * Configured through the {@code colorfuldiag.metadata.format} registry key.
+ * Loading always detects the format from the file content.
+ */
+public enum MetadataFormat {
+    JSON,       // Pretty-printed {@code _colorfuldiag.json}, easy to read and diff
+    BINARY;     // Compact {@code .colorfuldiag.bin}, see MetadataBinaryCodec
+
+    private static final String REGISTRY_KEY = "colorfuldiag.metadata.format";
+
+    public static MetadataFormat parse(String value) {
+        return value != null && value.trim().equalsIgnoreCase("binary") ? BINARY : JSON;
+    }
+
+    /**
+     * Reads the configured save format from the IDE registry.
+     */
+    public static MetadataFormat fromRegistry() {
+        try {
+            return parse(Registry.stringValue(REGISTRY_KEY));
+        } catch (Exception e) {
+            // Key missing (e.g. outside the IDE) - use the default
+            return JSON;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.intellij.openapi.diagnostic.Logger;
+import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
+import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
+
+/**
+ * Append-only journal of {@link MetadataChange}s kept next to a metadata file.
+ * <p>
+ * The journal is JSON lines: a header {@code {"base":<generation>}} followed by one change
+ * per line. The base is the {@link com.tamaygz.colorfuldiag.model.DiagramMetadata#getGeneration()
+ * generation} stored in the snapshot the changes apply to (0 if there is none). Every snapshot
+ * write draws a new generation, so if the snapshot was replaced since - by compaction that
+ * crashed before deleting the journal, or by a VCS update - the base no longer matches and
+ * the journal is stale: it is ignored on read and started over on the next append. Unlike the
+ * file's modification time this survives coarse timestamps and copies that preserve them.
+ * <p>
+ * A torn line from a crash mid-append is skipped; the next append starts on a new line.
+ * This class has no project dependencies so it can be used from benchmarks as well.
+ */
+public class MetadataJournal {
+    private static final Logger LOG = Logger.getInstance(MetadataJournal.class);
+    private static final String BASE_FIELD = "base";
+    // {"base":<long>} plus newline always fits
+    private static final int MAX_HEADER_LENGTH = 64;
+
+    // Base and size of each journal as this instance last left it, so appends needn't re-read them
+    private final Map<Path, AppendState> states = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the journaled changes that apply on top of a snapshot with the given base,
+     * or an empty list if there is no journal or it is stale.
+     */
+    @NotNull
+    public List<MetadataChange> read(@NotNull Path journal, long base) throws IOException {
+        if (!Files.exists(journal)) {
+            return List.of();
+        }
+        List<MetadataChange> changes = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(journal, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null || readBase(header) != base) {
+                LOG.info("Ignoring stale metadata journal: " + journal);
+                return List.of();
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    changes.add(readChange(line));
+                } catch (IOException | JsonParseException | IllegalStateException | IllegalArgumentException e) {
+                    LOG.warn("Skipping damaged record in metadata journal: " + journal, e);
+                }
+            }
+        }
+        return changes;
+    }
+
+    /**
+     * Appends changes to the journal, starting a new journal if there is none or it is stale.
+     * The journal is opened once; its header and last byte are only read if the file changed
+     * since this instance last appended to it.
+     */
+    public void append(@NotNull Path journal, long base, @NotNull List<MetadataChange> changes,
+                       @NotNull FsyncPolicy policy) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (MetadataChange change : changes) {
+            lines.append(writeChange(change)).append('\n');
+        }
+
+        try (FileChannel channel = FileChannel.open(journal, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            AppendState state = states.get(journal);
+            boolean fresh;
+            if (state != null && state.size() == size) {
+                fresh = state.base() != base;
+            } else {
+                fresh = readBase(channel) != base;
+                if (!fresh && !endsWithNewline(channel, size)) {
+                    // Previous append was torn; don't glue this record onto it
+                    lines.insert(0, '\n');
+                }
+            }
+            if (fresh) {
+                channel.truncate(0);
+                size = 0;
+                lines.insert(0, "{\"" + BASE_FIELD + "\":" + base + "}\n");
+            }
+
+            ByteBuffer buffer = StandardCharsets.UTF_8.encode(lines.toString());
+            long position = size;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            if (policy == FsyncPolicy.ALWAYS) {
+                channel.force(false);
+            }
+            states.put(journal, new AppendState(base, position));
+        } catch (IOException e) {
+            states.remove(journal);
+            throw e;
+        }
+    }
+
+    public void delete(@NotNull Path journal) throws IOException {
+        states.remove(journal);
+        Files.deleteIfExists(journal);
+    }
+
+    private static long readBase(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(MAX_HEADER_LENGTH);
+        channel.read(head, 0);
+        for (int i = 0; i < head.position(); i++) {
+            if (head.get(i) == '\n') {
+                return readBase(new String(head.array(), 0, i, StandardCharsets.UTF_8));
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private static boolean endsWithNewline(FileChannel channel, long size) throws IOException {
+        if (size == 0) {
+            return true;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        return last.get(0) == '\n';
+    }
+
+    private static long readBase(String header) {
+        try (JsonReader in = new JsonReader(new StringReader(header))) {
+            in.beginObject();
+            while (in.hasNext()) {
+                if (BASE_FIELD.equals(in.nextName())) {
+                    return in.nextLong();
+                }
+                in.skipValue();
+            }
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            // Not a header
+        }
+        return Long.MIN_VALUE;
+    }
+
+    private static String writeChange(MetadataChange change) throws IOException {
+        StringWriter buffer = new StringWriter();
+        JsonWriter out = new JsonWriter(buffer);
+        out.beginObject();
+        out.name("kind").value(change.getKind().name());
+        if (change.getId() != null) {
+            out.name("id").value(change.getId());
+        }
+        if (change.getValue() != null) {
+            out.name("value").value(change.getValue());
+        }
+        int[] geometry = change.getGeometry();
+        if (geometry != null) {
+            out.name("geometry").beginArray();
+            for (int value : geometry) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+        if (change.getIds() != null) {
+            out.name("ids").beginArray();
+            for (String id : change.getIds()) {
+                out.value(id);
+            }
+            out.endArray();
+        }
+        ContainerInfo container = change.getContainer();
+        if (container != null) {
+            out.name("container");
+            MetadataJsonAdapters.CONTAINER.write(out, container);
+        }
+        StickyNoteInfo note = change.getNote();
+        if (note != null) {
+            out.name("note");
+            MetadataJsonAdapters.NOTE.write(out, note);
+        }
+        out.endObject();
+        out.flush();
+        return buffer.toString();
+    }
+
+    private static MetadataChange readChange(String line) throws IOException {
+        MetadataChange.Kind kind = null;
+        String id = null;
+        String value = null;
+        int[] geometry = null;
+        List<String> ids = null;
+        ContainerInfo container = null;
+        StickyNoteInfo note = null;
+
+        JsonReader in = new JsonReader(new StringReader(line));
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "kind" -> kind = MetadataChange.Kind.valueOf(in.nextString());
+                case "id" -> id = in.nextString();
+                case "value" -> value = in.nextString();
+                case "geometry" -> {
+                    int[] values = new int[4];
+                    int count = 0;
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        if (count == values.length) {
+                            values = Arrays.copyOf(values, count * 2);
+                        }
+                        values[count++] = in.nextInt();
+                    }
+                    in.endArray();
+                    geometry = Arrays.copyOf(values, count);
+                }
+                case "ids" -> {
+                    ids = new ArrayList<>();
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                            ids.add(null);
+                        } else {
+                            ids.add(in.nextString());
+                        }
+                    }
+                    in.endArray();
+                }
+                case "container" -> container = MetadataJsonAdapters.CONTAINER.read(in);
+                case "note" -> note = MetadataJsonAdapters.NOTE.read(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (kind == null) {
+            throw new IOException("Journal record without kind");
+        }
+        return new MetadataChange(kind, id, value, geometry, ids, container, note);
+    }
+
+    private record AppendState(long base, long size) {
+    }
+}
@@ -0,0 +1,322 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
+import com.tamaygz.colorfuldiag.model.TableColorInfo;
+
+/**
+ * Hand-written streaming Gson adapters for the metadata model.
+ * <p>
+ * They read and write tokens directly, without reflection or an intermediate
+ * JSON tree or String. The produced JSON is identical to Gson's reflective
+ * output: same field names, same order, null fields omitted.
+ */
+public final class MetadataJsonAdapters {
+
+    public static final TypeAdapter<TableColorInfo> TABLE_COLOR = new TableColorAdapter();
+    public static final TypeAdapter<ContainerInfo> CONTAINER = new ContainerAdapter();
+    public static final TypeAdapter<StickyNoteInfo> NOTE = new StickyNoteAdapter();
+    public static final TypeAdapter<DiagramMetadata> METADATA = new DiagramMetadataAdapter();
+
+    private MetadataJsonAdapters() {
+    }
+
+    /**
+     * Registers all model adapters with a Gson builder.
+     */
+    public static GsonBuilder register(GsonBuilder builder) {
+        return builder
+                .registerTypeAdapter(TableColorInfo.class, TABLE_COLOR)
+                .registerTypeAdapter(ContainerInfo.class, CONTAINER)
+                .registerTypeAdapter(StickyNoteInfo.class, NOTE)
+                .registerTypeAdapter(DiagramMetadata.class, METADATA);
+    }
+
+    private static final class DiagramMetadataAdapter extends TypeAdapter<DiagramMetadata> {
+        @Override
+        public void write(JsonWriter out, DiagramMetadata metadata) throws IOException {
+            if (metadata == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            if (metadata.getGeneration() != 0) {
+                out.name("generation").value(metadata.getGeneration());
+            }
+            if (metadata.isViewCoordinates()) {
+                out.name("viewCoordinates").value(true);
+            }
+            if (metadata.getTables() != null) {
+                out.name("tables").beginObject();
+                for (Map.Entry<String, TableColorInfo> entry : metadata.getTables().entrySet()) {
+                    out.name(entry.getKey());
+                    TABLE_COLOR.write(out, entry.getValue());
+                }
+                out.endObject();
+            }
+            if (metadata.getContainers() != null) {
+                out.name("containers").beginArray();
+                for (ContainerInfo container : metadata.getContainers()) {
+                    CONTAINER.write(out, container);
+                }
+                out.endArray();
+            }
+            if (metadata.getNotes() != null) {
+                out.name("notes").beginArray();
+                for (StickyNoteInfo note : metadata.getNotes()) {
+                    NOTE.write(out, note);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public DiagramMetadata read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            DiagramMetadata metadata = new DiagramMetadata();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "generation" -> metadata.setGeneration(in.nextLong());
+                    case "viewCoordinates" -> metadata.setViewCoordinates(in.nextBoolean());
+                    case "tables" -> metadata.setTables(readTables(in));
+                    case "containers" -> metadata.setContainers(readList(in, CONTAINER));
+                    case "notes" -> metadata.setNotes(readList(in, NOTE));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return metadata;
+        }
+
+        private static Map<String, TableColorInfo> readTables(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            Map<String, TableColorInfo> tables = new HashMap<>();
+            in.beginObject();
+            while (in.hasNext()) {
+                String tableId = in.nextName();
+                TableColorInfo info = TABLE_COLOR.read(in);
+                if (info != null) {
+                    if (info.getTableId() == null) {
+                        info.setTableId(tableId);
+                    }
+                    tables.put(tableId, info);
+                }
+            }
+            in.endObject();
+            return tables;
+        }
+    }
+
+    private static final class TableColorAdapter extends TypeAdapter<TableColorInfo> {
+        @Override
+        public void write(JsonWriter out, TableColorInfo info) throws IOException {
+            if (info == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "tableId", info.getTableId());
+            writeString(out, "color", info.getColor());
+            out.endObject();
+        }
+
+        @Override
+        public TableColorInfo read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            TableColorInfo info = new TableColorInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "tableId" -> info.setTableId(readString(in));
+                    case "color" -> info.setColor(readString(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return info;
+        }
+    }
+
+    private static final class ContainerAdapter extends TypeAdapter<ContainerInfo> {
+        @Override
+        public void write(JsonWriter out, ContainerInfo container) throws IOException {
+            if (container == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "id", container.getId());
+            writeString(out, "title", container.getTitle());
+            writeString(out, "color", container.getColor());
+            writeIntArray(out, "bounds", container.getBounds());
+            List<String> tables = container.getTables();
+            if (tables != null) {
+                out.name("tables").beginArray();
+                for (String tableId : tables) {
+                    out.value(tableId);
+                }
+                out.endArray();
+            }
+            out.endObject();
+        }
+
+        @Override
+        public ContainerInfo read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            ContainerInfo container = new ContainerInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> container.setId(readString(in));
+                    case "title" -> container.setTitle(readString(in));
+                    case "color" -> container.setColor(readString(in));
+                    case "bounds" -> container.setBounds(readIntArray(in));
+                    case "tables" -> container.setTables(readStringList(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return container;
+        }
+    }
+
+    private static final class StickyNoteAdapter extends TypeAdapter<StickyNoteInfo> {
+        @Override
+        public void write(JsonWriter out, StickyNoteInfo note) throws IOException {
+            if (note == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            writeString(out, "id", note.getId());
+            writeString(out, "text", note.getText());
+            writeString(out, "color", note.getColor());
+            writeIntArray(out, "position", note.getPosition());
+            writeIntArray(out, "size", note.getSize());
+            out.endObject();
+        }
+
+        @Override
+        public StickyNoteInfo read(JsonReader in) throws IOException {
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                return null;
+            }
+            StickyNoteInfo note = new StickyNoteInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> note.setId(readString(in));
+                    case "text" -> note.setText(readString(in));
+                    case "color" -> note.setColor(readString(in));
+                    case "position" -> note.setPosition(readIntArray(in));
+                    case "size" -> note.setSize(readIntArray(in));
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return note;
+        }
+    }
+
+    private static void writeString(JsonWriter out, String name, String value) throws IOException {
+        if (value != null) {
+            out.name(name).value(value);
+        }
+    }
+
+    private static void writeIntArray(JsonWriter out, String name, int[] values) throws IOException {
+        if (values == null) {
+            return;
+        }
+        out.name(name).beginArray();
+        for (int value : values) {
+            out.value(value);
+        }
+        out.endArray();
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static int[] readIntArray(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        int[] values = new int[4];
+        int count = 0;
+        in.beginArray();
+        while (in.hasNext()) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = in.nextInt();
+        }
+        in.endArray();
+        return count == values.length ? values : Arrays.copyOf(values, count);
+    }
+
+    private static List<String> readStringList(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            values.add(readString(in));
+        }
+        in.endArray();
+        return values;
+    }
+
+    private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> values = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            T value = adapter.read(in);
+            if (value != null) {
+                values.add(value);
+            }
+        }
+        in.endArray();
+        return values;
+    }
+}
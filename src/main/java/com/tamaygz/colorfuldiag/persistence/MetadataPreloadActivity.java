@@ -0,0 +1,136 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.startup.ProjectActivity;
+import com.intellij.openapi.util.registry.Registry;
+import com.intellij.util.concurrency.AppExecutorUtil;
+
+import kotlin.Unit;
+import kotlin.coroutines.Continuation;
+
+/**
+ * Warms the metadata cache when a project opens.
+ * <p>
+ * Finds every metadata file in the project content and parses them in parallel on a
+ * small bounded pool, reporting progress in the status bar. The task is cancelled when
+ * the user cancels it or the project closes. Disabled with the
+ * {@code colorfuldiag.metadata.preload} registry key.
+ */
+public class MetadataPreloadActivity implements ProjectActivity {
+    private static final Logger LOG = Logger.getInstance(MetadataPreloadActivity.class);
+    private static final String REGISTRY_KEY = "colorfuldiag.metadata.preload";
+    private static final int MAX_THREADS = 4;
+
+    /**
+     * Only queues the background task, so it doesn't need to suspend.
+     */
+    @Nullable
+    @Override
+    public Object execute(@NotNull Project project, @NotNull Continuation<? super Unit> continuation) {
+        if (isEnabled()) {
+            new Task.Backgroundable(project, "Loading diagram metadata", true) {
+                @Override
+                public void run(@NotNull ProgressIndicator indicator) {
+                    preload(project, indicator);
+                }
+            }.queue();
+        }
+        return Unit.INSTANCE;
+    }
+
+    private static boolean isEnabled() {
+        try {
+            return Registry.is(REGISTRY_KEY);
+        } catch (Exception e) {
+            return true;
+        }
+    }
+
+    private static void preload(Project project, ProgressIndicator indicator) {
+        indicator.setIndeterminate(true);
+        indicator.setText("Finding diagram metadata files");
+        List<String> metadataPaths = ReadAction.nonBlocking(() -> findMetadataFiles(project))
+                .expireWith(project)
+                .wrapProgress(indicator)
+                .executeSynchronously();
+        if (metadataPaths.isEmpty()) {
+            return;
+        }
+
+        DiagramMetadataService service = DiagramMetadataService.getInstance(project);
+        int threads = Math.min(MAX_THREADS, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        ExecutorService executor = AppExecutorUtil.createBoundedApplicationPoolExecutor(
+                "ColorfulDiagrams Metadata Preload", threads);
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger loaded = new AtomicInteger();
+        int total = metadataPaths.size();
+
+        indicator.setIndeterminate(false);
+        indicator.setText("Loading diagram metadata");
+        List<Future<?>> futures = new ArrayList<>(total);
+        try {
+            for (String metadataPath : metadataPaths) {
+                futures.add(executor.submit(() -> {
+                    if (indicator.isCanceled() || project.isDisposed()) {
+                        return;
+                    }
+                    if (service.preload(metadataPath)) {
+                        loaded.incrementAndGet();
+                    }
+                    indicator.setFraction((double) done.incrementAndGet() / total);
+                }));
+            }
+            for (Future<?> future : futures) {
+                indicator.checkCanceled();
+                future.get();
+            }
+            LOG.info("Preloaded metadata for " + loaded.get() + " of " + total + " diagrams");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.warn("Metadata preload failed", e.getCause());
+        } catch (ProcessCanceledException e) {
+            LOG.info("Metadata preload cancelled");
+            throw e;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Collects the JSON metadata paths of all metadata files (JSON or binary) in project content.
+     */
+    private static List<String> findMetadataFiles(Project project) {
+        Set<String> metadataPaths = new LinkedHashSet<>();
+        ProjectFileIndex.getInstance(project).iterateContent(file -> {
+            ProgressManager.checkCanceled();
+            if (!file.isDirectory()) {
+                String metadataPath = DiagramMetadataService.toMetadataPath(file.getPath());
+                if (metadataPath != null) {
+                    metadataPaths.add(metadataPath);
+                }
+            }
+            return true;
+        });
+        return new ArrayList<>(metadataPaths);
+    }
+}
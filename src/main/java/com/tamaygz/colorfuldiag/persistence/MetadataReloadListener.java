@@ -0,0 +1,22 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.intellij.util.messages.Topic;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+
+/**
+ * Notified on the EDT when a metadata file changed on disk outside the plugin
+ * (e.g. git pull or branch switch) and the cached metadata was reloaded.
+ */
+public interface MetadataReloadListener {
+
+    @Topic.ProjectLevel
+    Topic<MetadataReloadListener> TOPIC = new Topic<>("Colorful Diagrams metadata reloaded", MetadataReloadListener.class);
+
+    /**
+     * @param metadataPath the JSON metadata path the cache entry is keyed by
+     * @param metadata     the freshly loaded metadata, now in the cache
+     */
+    void metadataReloaded(@NotNull String metadataPath, @NotNull DiagramMetadata metadata);
+}
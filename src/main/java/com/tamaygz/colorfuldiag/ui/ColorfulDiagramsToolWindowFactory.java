@@ -3,18 +3,16 @@ package com.tamaygz.colorfuldiag.ui;
 import java.awt.Component;
 import java.awt.Font;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
 import javax.swing.Icon;
 import javax.swing.JPanel;
-import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
 import org.jetbrains.annotations.NotNull;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.actionSystem.ActionManager;
 import com.intellij.openapi.actionSystem.ActionPlaces;
 import com.intellij.openapi.actionSystem.AnAction;
@@ -31,11 +29,18 @@ import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBScrollPane;
+import com.intellij.util.Alarm;
+import com.intellij.util.messages.MessageBusConnection;
 import com.intellij.util.ui.JBUI;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
 import com.tamaygz.colorfuldiag.diagram.DiagramEditorFactoryListener;
 import com.tamaygz.colorfuldiag.diagram.DiagramEditorListener;
 import com.tamaygz.colorfuldiag.diagram.OverlayPanel;
+import com.tamaygz.colorfuldiag.metrics.PluginMetrics;
 import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.persistence.DiagramStatusListener;
+import com.tamaygz.colorfuldiag.persistence.MetadataChangeListener;
 
 /**
  * Tool window factory for the Colorful Diagrams toolbox.
@@ -44,6 +49,8 @@ import com.tamaygz.colorfuldiag.model.DiagramMetadata;
 public class ColorfulDiagramsToolWindowFactory implements ToolWindowFactory {
 
     public static final String TOOL_WINDOW_ID = "Colorful Diagrams";
+    private static final int STATUS_MERGE_MS = 200;
+    private static final int METRICS_REFRESH_MS = 2000;
 
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
@@ -79,18 +86,13 @@ public class ColorfulDiagramsToolWindowFactory implements ToolWindowFactory {
         );
         toolWindow.getContentManager().addContent(content);
 
-        // Set up periodic status refresh
-        Timer statusRefreshTimer = new Timer(true);
-        statusRefreshTimer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                if (!project.isDisposed()) {
-                    SwingUtilities.invokeLater(() -> updateStatusPanel(statusPanel, project));
-                } else {
-                    cancel();
-                }
-            }
-        }, 1000, 2000); // Update every 2 seconds
+        // Refresh the status when it changes, for as long as the tool window exists
+        StatusRefresher refresher = new StatusRefresher(statusPanel, project, toolWindow.getDisposable());
+        MessageBusConnection connection = project.getMessageBus().connect(toolWindow.getDisposable());
+        connection.subscribe(DiagramStatusListener.TOPIC, refresher);
+        connection.subscribe(MetadataChangeListener.TOPIC,
+                (MetadataChangeListener) (diagramPath, metadata, changes) -> refresher.statusChanged());
+        refresher.statusChanged();
     }
 
     /**
@@ -113,6 +115,7 @@ public class ColorfulDiagramsToolWindowFactory implements ToolWindowFactory {
         statusPanel.add(createStatusLabel("overlay-status", "Overlay: Not attached"));
         statusPanel.add(createStatusLabel("metadata-status", "Metadata: -"));
         statusPanel.add(createStatusLabel("details-status", ""));
+        statusPanel.add(createStatusLabel("metrics-status", ""));
 
         statusPanel.add(Box.createVerticalStrut(16));
 
@@ -147,6 +150,12 @@ public class ColorfulDiagramsToolWindowFactory implements ToolWindowFactory {
             String overlayStatus = "Overlay: Not attached";
             String metadataStatus = "Metadata: -";
             String detailsStatus = "";
+            // Latency percentiles, only while colorfuldiag.metrics.enabled is on
+            String metricsStatus = "";
+            if (PluginMetrics.isEnabled()) {
+                String summary = PluginMetrics.formatSummary("<br>");
+                metricsStatus = "<html><b>Latency</b><br>" + (summary.isEmpty() ? "No samples yet" : summary) + "</html>";
+            }
             
             // First check if we have any overlay at all
             var allOverlays = DiagramEditorListener.getAllOverlayPanels();
@@ -206,6 +215,7 @@ public class ColorfulDiagramsToolWindowFactory implements ToolWindowFactory {
                         case "overlay-status" -> label.setText(overlayStatus);
                         case "metadata-status" -> label.setText(metadataStatus);
                         case "details-status" -> label.setText(detailsStatus);
+                        case "metrics-status" -> label.setText(metricsStatus);
                     }
                 }
             }
@@ -257,6 +267,45 @@ public class ColorfulDiagramsToolWindowFactory implements ToolWindowFactory {
         }
     }
 
+    /**
+     * Re-reads the status when it may have changed. Bursts of events are merged into one
+     * update, and nothing runs while the panel is hidden; a change made meanwhile shows
+     * up once it becomes visible again. Latency metrics have no change events, so while
+     * they are enabled the status is also refreshed every few seconds, again only while
+     * the panel is visible.
+     */
+    private final class StatusRefresher implements DiagramStatusListener {
+        private final JPanel statusPanel;
+        private final Project project;
+        private final MergingUpdateQueue updateQueue;
+        private final Alarm metricsAlarm;
+
+        StatusRefresher(JPanel statusPanel, Project project, Disposable parent) {
+            this.statusPanel = statusPanel;
+            this.project = project;
+            this.updateQueue = new MergingUpdateQueue("ColorfulDiagrams.Status", STATUS_MERGE_MS,
+                    true, statusPanel, parent, statusPanel, Alarm.ThreadToUse.SWING_THREAD);
+            this.metricsAlarm = new Alarm(statusPanel, parent);
+        }
+
+        @Override
+        public void statusChanged() {
+            // May be called from any thread; the queue runs the update on the EDT
+            updateQueue.queue(Update.create(this, this::refresh));
+        }
+
+        private void refresh() {
+            if (project.isDisposed()) {
+                return;
+            }
+            updateStatusPanel(statusPanel, project);
+            metricsAlarm.cancelAllRequests();
+            if (PluginMetrics.isEnabled()) {
+                metricsAlarm.addRequest(this::statusChanged, METRICS_REFRESH_MS);
+            }
+        }
+    }
+
     /**
      * Action to manually refresh/reattach overlays.
      */
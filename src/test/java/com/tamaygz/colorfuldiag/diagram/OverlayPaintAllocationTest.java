@@ -0,0 +1,96 @@
+package com.tamaygz.colorfuldiag.diagram;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.Graphics2D;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+
+import org.junit.Test;
+
+import com.sun.management.ThreadMXBean;
+import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
+
+/**
+ * Allocation regression test for the overlay's steady-state frame. With the layers cached,
+ * a frame blits them and draws the selected and hovered elements on top; none of that
+ * may allocate per element. Measured with the JVM's per-thread allocation counter, so
+ * only this thread's painting is counted.
+ */
+public class OverlayPaintAllocationTest {
+    private static final int WIDTH = 1200;
+    private static final int HEIGHT = 800;
+    private static final int WARMUP_FRAMES = 200;
+    private static final int FRAMES = 500;
+    // Room for what Graphics2D.create(), the blits and the two live elements cost whatever
+    // else is on screen (about 2 KB on JDK 17). With 100 elements, anything allocated per
+    // element would exceed it
+    private static final long BUDGET_BYTES_PER_FRAME = 4 * 1024;
+
+    @Test
+    public void steadyFrameStaysWithinAllocationBudget() {
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        OverlayPanel panel = new OverlayPanel();
+        panel.setSize(WIDTH, HEIGHT);
+        panel.setMetadata(createMetadata());
+        // Select the first note, then hover the first container, so both are drawn live
+        mouse(panel, MouseEvent.MOUSE_PRESSED, 30, 430);
+        mouse(panel, MouseEvent.MOUSE_RELEASED, 30, 430);
+        mouse(panel, MouseEvent.MOUSE_MOVED, 100, 100);
+
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setClip(0, 0, WIDTH, HEIGHT);
+        try {
+            for (int i = 0; i < WARMUP_FRAMES; i++) {
+                panel.paintComponent(graphics);
+            }
+            long threadId = Thread.currentThread().threadId();
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < FRAMES; i++) {
+                panel.paintComponent(graphics);
+            }
+            long perFrame = (threads.getThreadAllocatedBytes(threadId) - before) / FRAMES;
+            assertTrue("Steady frame allocated " + perFrame + " bytes, budget is " + BUDGET_BYTES_PER_FRAME,
+                    perFrame <= BUDGET_BYTES_PER_FRAME);
+        } finally {
+            graphics.dispose();
+        }
+    }
+
+    /**
+     * 40 containers in a grid over the top half, 60 notes with text below them and a dozen
+     * colored tables, so the legend with its overflow line is shown too.
+     */
+    private static DiagramMetadata createMetadata() {
+        DiagramMetadata metadata = new DiagramMetadata();
+        for (int i = 0; i < 40; i++) {
+            ContainerInfo container = new ContainerInfo("Container " + i,
+                    new int[]{20 + (i % 10) * 115, 20 + (i / 10) * 95, 105, 85});
+            container.setColor(i % 2 == 0 ? "#45B7D1" : "#96CEB4");
+            metadata.addContainer(container);
+        }
+        for (int i = 0; i < 60; i++) {
+            StickyNoteInfo note = new StickyNoteInfo(new int[]{20 + (i % 12) * 95, 420 + (i / 12) * 75},
+                    new int[]{85, 65}, "Note " + i + " keeps the nightly job in sync");
+            metadata.addNote(note);
+        }
+        for (int i = 0; i < 12; i++) {
+            metadata.setTableColor("public.table_" + i, "#E74C3C");
+        }
+        return metadata;
+    }
+
+    private static void mouse(OverlayPanel panel, int id, int x, int y) {
+        int modifiers = id == MouseEvent.MOUSE_MOVED ? 0 : InputEvent.BUTTON1_DOWN_MASK;
+        int button = id == MouseEvent.MOUSE_MOVED ? MouseEvent.NOBUTTON : MouseEvent.BUTTON1;
+        panel.dispatchEvent(new MouseEvent(panel, id, System.currentTimeMillis(), modifiers, x, y, 1, false, button));
+    }
+}
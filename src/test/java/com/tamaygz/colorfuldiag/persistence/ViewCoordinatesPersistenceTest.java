@@ -0,0 +1,131 @@
+package com.tamaygz.colorfuldiag.persistence;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.google.gson.GsonBuilder;
+import com.tamaygz.colorfuldiag.model.ContainerInfo;
+import com.tamaygz.colorfuldiag.model.DiagramMetadata;
+import com.tamaygz.colorfuldiag.model.MetadataChange;
+import com.tamaygz.colorfuldiag.model.StickyNoteInfo;
+
+/**
+ * The one-way conversion to view coordinates has to survive the journal: once converted,
+ * compacting and reloading must give the converted positions and the marker, so a later
+ * open never converts them a second time.
+ * <p>
+ * Compaction is done here the way {@link DiagramMetadataService} does it (snapshot plus
+ * journal, written as a new snapshot), since the service itself needs a project.
+ */
+public class ViewCoordinatesPersistenceTest {
+    private static final long BASE_GENERATION = 42L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final MetadataFileStore fileStore =
+            new MetadataFileStore(MetadataJsonAdapters.register(new GsonBuilder()).create());
+    private final MetadataJournal journal = new MetadataJournal();
+
+    @Test
+    public void convertedPositionsSurviveCompactionAndReload() throws IOException {
+        for (MetadataFormat format : MetadataFormat.values()) {
+            Path snapshot = folder.newFile("converted_" + format + ".json").toPath();
+            Path journalFile = folder.getRoot().toPath().resolve("converted_" + format + ".journal");
+            fileStore.write(snapshot, legacyMetadata(), format, FsyncPolicy.NEVER);
+
+            // Open: convert through a scrolled and zoomed view, then edit in view coordinates
+            DiagramMetadata open = fileStore.read(snapshot);
+            MetadataChange conversion = MetadataChange.viewCoordinates(-75, 40, 0.5);
+            conversion.applyTo(open);
+            ContainerInfo added = new ContainerInfo("Added", "#336699", 900, 700, 200, 120);
+            open.putContainer(added.copy());
+            journal.append(journalFile, open.getGeneration(),
+                    List.of(conversion, MetadataChange.containerAdded(added)), FsyncPolicy.NEVER);
+
+            compact(snapshot, journalFile, format);
+
+            DiagramMetadata reloaded = readWithJournal(snapshot, journalFile);
+            assertTrue(format + ": marker lost in compaction", reloaded.isViewCoordinates());
+            assertSamePositions(open, reloaded);
+
+            // The next open converts again; it must not move anything
+            MetadataChange.viewCoordinates(-300, 10, 2.0).applyTo(reloaded);
+            assertSamePositions(open, reloaded);
+        }
+    }
+
+    @Test
+    public void markerJournaledAfterActionEditSurvivesCompaction() throws IOException {
+        Path snapshot = folder.newFile("marker.json").toPath();
+        Path journalFile = folder.getRoot().toPath().resolve("marker.journal");
+        DiagramMetadata colorsOnly = new DiagramMetadata();
+        colorsOnly.setTableColor("users", "#FF0000");
+        colorsOnly.setGeneration(BASE_GENERATION);
+        fileStore.write(snapshot, colorsOnly, MetadataFormat.JSON, FsyncPolicy.NEVER);
+
+        // Nothing to convert; an action's edit may reach the journal before the marker
+        ContainerInfo added = new ContainerInfo("Added", "#336699", 120, 80, 200, 120);
+        journal.append(journalFile, BASE_GENERATION,
+                List.of(MetadataChange.containerAdded(added), MetadataChange.viewCoordinatesMarked()),
+                FsyncPolicy.NEVER);
+
+        compact(snapshot, journalFile, MetadataFormat.JSON);
+
+        DiagramMetadata reloaded = readWithJournal(snapshot, journalFile);
+        assertTrue("marker lost in compaction", reloaded.isViewCoordinates());
+        MetadataChange.viewCoordinates(-300, 10, 2.0).applyTo(reloaded);
+        assertArrayEquals(added.getBounds(), reloaded.getContainer(added.getId()).getBounds());
+    }
+
+    @Test
+    public void legacyMetadataIsNotMarked() throws IOException {
+        Path snapshot = folder.newFile("legacy.json").toPath();
+        fileStore.write(snapshot, legacyMetadata(), MetadataFormat.JSON, FsyncPolicy.NEVER);
+        assertFalse(fileStore.read(snapshot).isViewCoordinates());
+    }
+
+    private static DiagramMetadata legacyMetadata() {
+        DiagramMetadata metadata = new DiagramMetadata();
+        metadata.setGeneration(BASE_GENERATION);
+        metadata.addContainer(new ContainerInfo("Orders", "#4CAF50", 300, 200, 121, 80));
+        metadata.addNote(new StickyNoteInfo(new int[]{413, 517}, new int[]{150, 101}, "Check indexes"));
+        return metadata;
+    }
+
+    private void compact(Path snapshot, Path journalFile, MetadataFormat format) throws IOException {
+        DiagramMetadata metadata = readWithJournal(snapshot, journalFile);
+        metadata.setGeneration(BASE_GENERATION + 1);
+        fileStore.write(snapshot, metadata, format, FsyncPolicy.NEVER);
+        journal.delete(journalFile);
+    }
+
+    private DiagramMetadata readWithJournal(Path snapshot, Path journalFile) throws IOException {
+        DiagramMetadata metadata = fileStore.read(snapshot);
+        for (MetadataChange change : journal.read(journalFile, metadata.getGeneration())) {
+            change.applyTo(metadata);
+        }
+        return metadata;
+    }
+
+    private static void assertSamePositions(DiagramMetadata expected, DiagramMetadata actual) {
+        for (ContainerInfo container : expected.getContainers()) {
+            assertArrayEquals(container.getTitle(), container.getBounds(),
+                    actual.getContainer(container.getId()).getBounds());
+        }
+        for (StickyNoteInfo note : expected.getNotes()) {
+            StickyNoteInfo other = actual.getNote(note.getId());
+            assertArrayEquals(note.getText(), note.getPosition(), other.getPosition());
+            assertArrayEquals(note.getText(), note.getSize(), other.getSize());
+        }
+    }
+}